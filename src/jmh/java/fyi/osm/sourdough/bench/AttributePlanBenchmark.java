@@ -0,0 +1,145 @@
+package fyi.osm.sourdough.bench;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.reader.SimpleFeature;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.stats.Stats;
+import fyi.osm.sourdough.Configuration;
+import fyi.osm.sourdough.layers.Amenities;
+import fyi.osm.sourdough.util.AttributePlan;
+import fyi.osm.sourdough.util.AttributeProcessor;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares probing every key of a plan against walking each feature's tags,
+ * using the amenities layer's detail tags (the largest tag set in the schema).
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AttributePlanBenchmark {
+
+  // Tag sets modelled on real OSM amenities: most have a handful of tags, a few
+  // are tagged in great detail, and many tags are ones the layer doesn't want
+  private static final Map<String, List<Map<String, Object>>> TAG_DISTRIBUTIONS = Map.of(
+    "sparse",
+    List.of(
+      Map.of("amenity", "bench"),
+      Map.of("amenity", "waste_basket"),
+      Map.of("amenity", "parking", "access", "customers", "fee", "no"),
+      Map.of("amenity", "bicycle_parking", "bicycle_parking", "stands", "capacity", "8")
+    ),
+    "typical",
+    List.of(
+      Map.of(
+        "amenity", "restaurant",
+        "name", "Ristorante Fiore",
+        "cuisine", "italian",
+        "opening_hours", "Mo-Sa 17:00-22:00",
+        "addr:housenumber", "12",
+        "addr:street", "Hanover Street",
+        "phone", "+1 617 555 0100",
+        "website", "https://example.com/"
+      ),
+      Map.of(
+        "amenity", "cafe",
+        "name", "Blue Cup",
+        "outdoor_seating", "yes",
+        "wheelchair", "limited",
+        "check_date", "2024-05-01"
+      ),
+      Map.of(
+        "amenity", "place_of_worship",
+        "religion", "christian",
+        "denomination", "catholic",
+        "name", "St. Leonard",
+        "wikidata", "Q7588395",
+        "building", "church"
+      )
+    ),
+    "rich",
+    List.of(
+      Map.ofEntries(
+        Map.entry("amenity", "fast_food"),
+        Map.entry("name", "Burger Place"),
+        Map.entry("brand", "Burger Place"),
+        Map.entry("brand:wikidata", "Q1234567"),
+        Map.entry("cuisine", "burger"),
+        Map.entry("diet:vegetarian", "yes"),
+        Map.entry("diet:vegan", "no"),
+        Map.entry("drive_through", "yes"),
+        Map.entry("takeaway", "yes"),
+        Map.entry("indoor_seating", "yes"),
+        Map.entry("outdoor_seating", "no"),
+        Map.entry("internet_access", "wlan"),
+        Map.entry("internet_access:fee", "no"),
+        Map.entry("opening_hours", "06:00-24:00"),
+        Map.entry("addr:city", "Boston"),
+        Map.entry("addr:housenumber", "400"),
+        Map.entry("addr:postcode", "02115"),
+        Map.entry("addr:street", "Boylston Street"),
+        Map.entry("phone", "+1 617 555 0199"),
+        Map.entry("website", "https://example.com/"),
+        Map.entry("wheelchair", "yes"),
+        Map.entry("toilets", "yes"),
+        Map.entry("smoking", "no"),
+        Map.entry("level", "0")
+      )
+    )
+  );
+
+  @Param({ "PROBE_KEYS", "WALK_TAGS", "ADAPTIVE" })
+  public AttributePlan.Mode mode;
+
+  @Param({ "sparse", "typical", "rich" })
+  public String distribution;
+
+  private AttributePlan plan;
+  private SourceFeature[] sources;
+  private FeatureCollector.Feature[] outputs;
+
+  @Setup
+  public void setup() {
+    plan = AttributeProcessor.compile(Amenities.DETAIL_TAGS, Configuration.defaults(), mode);
+
+    var factory = new FeatureCollector.Factory(PlanetilerConfig.defaults(), Stats.inMemory());
+    var tagSets = TAG_DISTRIBUTIONS.get(distribution);
+    sources = new SourceFeature[tagSets.size()];
+    outputs = new FeatureCollector.Feature[tagSets.size()];
+    for (int i = 0; i < tagSets.size(); i++) {
+      sources[i] = SimpleFeature.create(GeoUtils.point(-71.06, 42.36), tagSets.get(i));
+      outputs[i] = factory.get(sources[i]).point(Amenities.LAYER_NAME);
+    }
+  }
+
+  @Benchmark
+  public void setAttributes() {
+    for (int i = 0; i < sources.length; i++) {
+      plan.setAttributes(sources[i], outputs[i]);
+    }
+  }
+
+  @Benchmark
+  public void setAttributesWithMinzoom() {
+    for (int i = 0; i < sources.length; i++) {
+      plan.setAttributesWithMinzoom(sources[i], outputs[i], 14);
+    }
+  }
+}
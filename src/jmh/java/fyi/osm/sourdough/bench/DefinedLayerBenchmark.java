@@ -0,0 +1,101 @@
+package fyi.osm.sourdough.bench;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.stats.Stats;
+import fyi.osm.sourdough.Configuration;
+import fyi.osm.sourdough.definitions.DefinedLayer;
+import fyi.osm.sourdough.definitions.LayerSpec;
+import fyi.osm.sourdough.layers.Historic;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the hand-written historic layer with the same layer defined in
+ * JSON, on the same fixtures, to check that compiling definitions up front
+ * keeps them as fast as Java:
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="DefinedLayerBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DefinedLayerBenchmark {
+
+  // the historic layer, as a definition
+  private static final String HISTORIC = """
+    {
+      "layers": [
+        {
+          "name": "historic",
+          "primary_tags": ["historic"],
+          "detail_tags": [
+            "access", "aircraft:type", "amenity", "archaeological_site", "building",
+            "heritage", "inscription", "material", "memorial:type", "memorial", "model",
+            "operator", "religion", "ruins", "start_date", "tourism", "website"
+          ],
+          "exclude": { "historic": ["yes", "no"] },
+          "label_min_zoom": {
+            "key": "historic",
+            "values": {
+              "castle": 11, "fort": 11, "archaeological_site": 11,
+              "monument": 12, "battlefield": 12, "palace": 12,
+              "ruins": 13, "tomb": 13, "manor": 13, "building": 13,
+              "church": 13, "mine": 13, "tower": 13, "windmill": 13
+            },
+            "other": 14
+          },
+          "area": { "min_zoom": 2, "min_pixel_size": 4, "detail_pixel_size": 32 },
+          "line": { "min_zoom": 12, "min_pixel_size": 1, "buffer_pixels": 4 },
+          "point": { "buffer_pixels": 32 }
+        }
+      ]
+    }
+    """;
+
+  @Param({ "java", "definition" })
+  public String implementation;
+
+  private FeatureProcessor processor;
+  private FeatureCollector.Factory factory;
+  private List<SourceFeature> features;
+
+  @Setup
+  public void setup() throws IOException {
+    var config = Configuration.defaults();
+    processor = implementation.equals("java")
+      ? new Historic(config)
+      : new DefinedLayer(LayerSpec.parse(HISTORIC).get(0), config);
+    factory = new FeatureCollector.Factory(PlanetilerConfig.defaults(), Stats.inMemory());
+    features = LayerFixtures.forLayer(Historic.LAYER_NAME);
+  }
+
+  @Benchmark
+  public void processFeature(Blackhole blackhole) {
+    for (var sf : features) {
+      var fc = factory.get(sf);
+      processor.processFeature(sf, fc);
+      blackhole.consume(fc);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package fyi.osm.sourdough.bench;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.stats.Stats;
+import fyi.osm.sourdough.Builder;
+import fyi.osm.sourdough.Configuration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Feeds each layer's fixtures (see {@link LayerFixtures}) through its
+ * {@code processFeature}, the way a build does: one new feature collector per
+ * source feature. Add {@code -prof gc} to the JMH options to see allocation
+ * rates alongside the timings:
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="LayerBenchmark -prof gc"
+ * </pre>
+ *
+ * <p>Source features cache their projected geometry, so after the first
+ * iteration this measures the layer's own logic (and the output features it
+ * creates) rather than reprojection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LayerBenchmark {
+
+  @Param(
+    {
+      "advertising",
+      "aerialways",
+      "aeroways",
+      "amenities",
+      "barriers",
+      "boundaries",
+      "buildings",
+      "clubs",
+      "craft",
+      "education",
+      "emergency",
+      "geological",
+      "healthcare",
+      "highways",
+      "historic",
+      "landcover",
+      "landuse",
+      "leisure",
+      "man_made",
+      "military",
+      "natural",
+      "offices",
+      "pistes",
+      "places",
+      "power",
+      "public_transport",
+      "railways",
+      "routes",
+      "shops",
+      "tourism",
+      "water",
+      "waterways",
+    }
+  )
+  public String layer;
+
+  private FeatureProcessor processor;
+  private FeatureCollector.Factory factory;
+  private List<SourceFeature> features;
+
+  @Setup
+  public void setup() {
+    processor = (FeatureProcessor) Builder.createLayer(layer, Configuration.defaults());
+    factory = new FeatureCollector.Factory(PlanetilerConfig.defaults(), Stats.inMemory());
+    features = LayerFixtures.forLayer(layer);
+  }
+
+  @Benchmark
+  public void processFeature(Blackhole blackhole) {
+    for (var sf : features) {
+      var fc = factory.get(sf);
+      processor.processFeature(sf, fc);
+      blackhole.consume(fc);
+    }
+  }
+}
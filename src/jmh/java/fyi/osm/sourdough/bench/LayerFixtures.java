@@ -0,0 +1,1074 @@
+package fyi.osm.sourdough.bench;
+
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.reader.SimpleFeature;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Source features modelled on real OSM data, for feeding through layers in
+ * benchmarks. Each fixture is a small neighbourhood's worth of the features a
+ * layer typically sees, with the kind of tagging found in well-mapped cities.
+ */
+final class LayerFixtures {
+
+  private LayerFixtures() {}
+
+  // a block in Boston's Back Bay, used as the origin for generated geometries
+  private static final double LON = -71.0810;
+  private static final double LAT = 42.3505;
+
+  static List<SourceFeature> forLayer(String layer) {
+    return switch (layer) {
+      case "advertising" -> advertising();
+      case "aerialways" -> aerialways();
+      case "aeroways" -> aeroways();
+      case "amenities" -> amenities();
+      case "barriers" -> barriers();
+      case "boundaries" -> boundaries();
+      case "buildings" -> buildings();
+      case "clubs" -> clubs();
+      case "craft" -> craft();
+      case "education" -> education();
+      case "emergency" -> emergency();
+      case "geological" -> geological();
+      case "healthcare" -> healthcare();
+      case "highways" -> highways();
+      case "historic" -> historic();
+      case "landcover" -> landcover();
+      case "landuse" -> landuse();
+      case "leisure" -> leisure();
+      case "man_made" -> manMade();
+      case "military" -> military();
+      case "natural" -> natural();
+      case "offices" -> offices();
+      case "pistes" -> pistes();
+      case "places" -> places();
+      case "power" -> power();
+      case "public_transport" -> publicTransport();
+      case "railways" -> railways();
+      case "routes" -> routes();
+      case "shops" -> shops();
+      case "tourism" -> tourism();
+      case "water" -> water();
+      case "waterways" -> waterways();
+      default -> throw new IllegalArgumentException("No fixtures for layer " + layer);
+    };
+  }
+
+  /** A dense city block: a 10x10 grid of row houses, some with building parts. */
+  private static List<SourceFeature> buildings() {
+    var features = new ArrayList<SourceFeature>();
+    for (int row = 0; row < 10; row++) {
+      for (int col = 0; col < 10; col++) {
+        var tags = new HashMap<String, Object>();
+        tags.put("building", row % 4 == 0 ? "apartments" : "residential");
+        tags.put("building:levels", Integer.toString(3 + (row + col) % 4));
+        tags.put("roof:shape", "flat");
+        tags.put("addr:housenumber", Integer.toString(100 + row * 10 + col));
+        tags.put("addr:street", "Marlborough Street");
+        tags.put("addr:postcode", "02116");
+        if (col % 3 == 0) {
+          tags.put("height", "14.5");
+          tags.put("building:material", "brick");
+        }
+        double lon = LON + col * 0.0002;
+        double lat = LAT + row * 0.00012;
+        features.add(feature(rectangle(lon, lat, 0.00018, 0.0001), tags));
+
+        if (col % 5 == 0) {
+          features.add(
+            feature(
+              rectangle(lon, lat, 0.00006, 0.00005),
+              Map.of("building:part", "yes", "building:levels", "1", "roof:shape", "gabled")
+            )
+          );
+        }
+      }
+    }
+    return features;
+  }
+
+  /** A motorway with its ramps, plus the surrounding street grid. */
+  private static List<SourceFeature> highways() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        wiggly(LON, LAT, 0.05, 0.01, 200),
+        Map.of(
+          "highway", "motorway",
+          "ref", "I 90",
+          "name", "Massachusetts Turnpike",
+          "oneway", "yes",
+          "lanes", "4",
+          "maxspeed", "55 mph",
+          "surface", "asphalt",
+          "toll", "yes",
+          "layer", "-1",
+          "tunnel", "yes"
+        )
+      )
+    );
+    for (int i = 0; i < 4; i++) {
+      features.add(
+        feature(
+          wiggly(LON + i * 0.01, LAT, 0.002, 0.002, 12),
+          Map.of("highway", "motorway_link", "oneway", "yes", "lanes", "1")
+        )
+      );
+    }
+    String[] kinds = { "primary", "secondary", "tertiary", "residential", "service", "footway" };
+    for (int i = 0; i < 60; i++) {
+      var tags = new HashMap<String, Object>();
+      tags.put("highway", kinds[i % kinds.length]);
+      tags.put("name", "Street " + i);
+      tags.put("surface", "asphalt");
+      if (i % 2 == 0) {
+        tags.put("oneway", "yes");
+        tags.put("sidewalk", "both");
+        tags.put("maxspeed", "25 mph");
+      }
+      features.add(feature(wiggly(LON, LAT + i * 0.0003, 0.01, 0.0001, 20), tags));
+    }
+    return features;
+  }
+
+  /** A large hospital campus and university polygon, plus nearby points. */
+  private static List<SourceFeature> amenities() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.004, 400),
+        Map.of(
+          "amenity", "hospital",
+          "name", "Massachusetts General Hospital",
+          "healthcare", "hospital",
+          "emergency", "yes",
+          "operator", "Mass General Brigham",
+          "website", "https://www.massgeneral.org/",
+          "wikidata", "Q1548683"
+        )
+      )
+    );
+    features.add(
+      feature(
+        circle(LON + 0.01, LAT, 0.006, 600),
+        Map.of("amenity", "university", "name", "Northeastern University", "wikidata", "Q37548")
+      )
+    );
+    String[] kinds = { "restaurant", "cafe", "bench", "parking", "bicycle_parking", "pharmacy" };
+    for (int i = 0; i < 50; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 10) * 0.0004, LAT + (i / 10) * 0.0004),
+          Map.of(
+            "amenity", kinds[i % kinds.length],
+            "name", "Place " + i,
+            "opening_hours", "Mo-Fr 08:00-18:00",
+            "wheelchair", "yes"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  /** Monuments and memorials around a common, a fort, a ruined wall and some historic houses. */
+  private static List<SourceFeature> historic() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.002, 80),
+        Map.of("historic", "fort", "name", "Fort Independence", "wikidata", "Q5472011")
+      )
+    );
+    features.add(
+      feature(
+        wiggly(LON, LAT, 0.004, 0.0002, 40),
+        Map.of("historic", "ruins", "ruins", "wall", "start_date", "1634")
+      )
+    );
+    String[] kinds = { "memorial", "monument", "building", "church", "yes" };
+    for (int i = 0; i < 40; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 8) * 0.0003, LAT + (i / 8) * 0.0003),
+          Map.of(
+            "historic", kinds[i % kinds.length],
+            "name", "Memorial " + i,
+            "memorial", "plaque",
+            "inscription", "Erected in memory of those who served",
+            "heritage", "2"
+          )
+        )
+      );
+    }
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          rectangle(LON + i * 0.0003, LAT - 0.001, 0.0002, 0.0001),
+          Map.of("historic", "manor", "building", "house", "start_date", "18" + (10 + i))
+        )
+      );
+    }
+    return features;
+  }
+
+  private static List<SourceFeature> landuse() {
+    var features = new ArrayList<SourceFeature>();
+    String[] kinds = { "residential", "commercial", "retail", "grass", "industrial" };
+    for (int i = 0; i < 20; i++) {
+      features.add(
+        feature(
+          circle(LON + i * 0.003, LAT, 0.0015, 80),
+          Map.of("landuse", kinds[i % kinds.length], "name", "Area " + i)
+        )
+      );
+    }
+    return features;
+  }
+
+  private static List<SourceFeature> natural() {
+    return List.of(
+      feature(circle(LON, LAT, 0.01, 800), Map.of("natural", "wood", "leaf_type", "broadleaved")),
+      feature(wiggly(LON, LAT, 0.03, 0.002, 300), Map.of("natural", "coastline")),
+      feature(wiggly(LON, LAT, 0.01, 0.001, 80), Map.of("natural", "cliff")),
+      feature(GeoUtils.point(LON, LAT), Map.of("natural", "peak", "name", "Hill", "ele", "61")),
+      feature(GeoUtils.point(LON, LAT), Map.of("natural", "tree", "leaf_type", "broadleaved"))
+    );
+  }
+
+  private static List<SourceFeature> places() {
+    return List.of(
+      feature(
+        GeoUtils.point(-71.0589, 42.3601),
+        Map.of(
+          "place", "city",
+          "name", "Boston",
+          "name:en", "Boston",
+          "name:fr", "Boston",
+          "name:zh", "波士顿",
+          "population", "675647",
+          "capital", "4",
+          "wikidata", "Q100"
+        )
+      ),
+      feature(GeoUtils.point(LON, LAT), Map.of("place", "neighbourhood", "name", "Back Bay")),
+      feature(GeoUtils.point(LON, LAT), Map.of("place", "suburb", "name", "South End")),
+      feature(GeoUtils.point(LON, LAT), Map.of("place", "locality", "name", "Kenmore Square"))
+    );
+  }
+
+  private static List<SourceFeature> railways() {
+    var features = new ArrayList<SourceFeature>();
+    for (int i = 0; i < 6; i++) {
+      features.add(
+        feature(
+          wiggly(LON, LAT + i * 0.00004, 0.03, 0.002, 150),
+          Map.of(
+            "railway", i < 4 ? "rail" : "subway",
+            "electrified", "contact_line",
+            "gauge", "1435",
+            "usage", "main",
+            "maxspeed", "79 mph"
+          )
+        )
+      );
+    }
+    features.add(
+      feature(
+        circle(LON, LAT, 0.0008, 40),
+        Map.of("railway", "platform", "name", "Back Bay", "ref", "1")
+      )
+    );
+    features.add(
+      feature(
+        GeoUtils.point(LON, LAT),
+        Map.of("railway", "station", "name", "Back Bay", "operator", "MBTA")
+      )
+    );
+    return features;
+  }
+
+  private static List<SourceFeature> shops() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.001, 120),
+        Map.of("shop", "mall", "name", "Prudential Center", "wikidata", "Q7252965")
+      )
+    );
+    String[] kinds = { "clothes", "convenience", "supermarket", "hairdresser", "books" };
+    for (int i = 0; i < 60; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 12) * 0.0002, LAT + (i / 12) * 0.0002),
+          Map.of(
+            "shop", kinds[i % kinds.length],
+            "name", "Shop " + i,
+            "brand", "Brand " + (i % 7),
+            "opening_hours", "Mo-Sa 10:00-21:00; Su 11:00-18:00",
+            "addr:housenumber", Integer.toString(300 + i),
+            "addr:street", "Newbury Street"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  private static List<SourceFeature> water() {
+    return List.of(
+      feature(
+        circle(LON, LAT, 0.02, 2000),
+        Map.of("natural", "water", "water", "river", "name", "Charles River", "wikidata", "Q1068")
+      ),
+      feature(circle(LON, LAT, 0.001, 60), Map.of("natural", "water", "water", "pond")),
+      feature(circle(LON, LAT, 0.0005, 30), Map.of("leisure", "swimming_pool", "access", "private"))
+    );
+  }
+
+  private static List<SourceFeature> waterways() {
+    return List.of(
+      feature(
+        wiggly(LON, LAT, 0.08, 0.01, 800),
+        Map.of("waterway", "river", "name", "Charles River", "wikidata", "Q1068")
+      ),
+      feature(
+        wiggly(LON, LAT, 0.01, 0.001, 60),
+        Map.of("waterway", "stream", "intermittent", "no")
+      ),
+      feature(circle(LON, LAT, 0.0004, 20), Map.of("waterway", "dam", "name", "Charles River Dam")),
+      feature(GeoUtils.point(LON, LAT), Map.of("waterway", "lock_gate"))
+    );
+  }
+
+  /** Billboards along a highway, and advertising columns and boards on the sidewalks. */
+  private static List<SourceFeature> advertising() {
+    var features = new ArrayList<SourceFeature>();
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          rectangle(LON + i * 0.002, LAT - 0.002, 0.00004, 0.00001),
+          Map.of("advertising", "billboard", "lit", "yes", "sides", "2", "operator", "Outfront")
+        )
+      );
+    }
+    String[] kinds = { "column", "board", "poster_box" };
+    for (int i = 0; i < 30; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 10) * 0.0004, LAT + (i / 10) * 0.0004),
+          Map.of("advertising", kinds[i % kinds.length], "lit", i % 2 == 0 ? "yes" : "no")
+        )
+      );
+    }
+    features.add(
+      feature(
+        wiggly(LON, LAT, 0.0006, 0.00001, 4),
+        Map.of("advertising", "wall_painting", "name", "Mural")
+      )
+    );
+    return features;
+  }
+
+  /** A ski area's lifts, with stations at each end. */
+  private static List<SourceFeature> aerialways() {
+    var features = new ArrayList<SourceFeature>();
+    String[] kinds = { "chair_lift", "t-bar", "gondola", "magic_carpet" };
+    for (int i = 0; i < 8; i++) {
+      double lon = LON + i * 0.003;
+      features.add(
+        feature(
+          wiggly(lon, LAT, 0.004, 0.0002, 10),
+          Map.of(
+            "aerialway", kinds[i % kinds.length],
+            "name", "Lift " + i,
+            "aerialway:occupancy", "4",
+            "aerialway:capacity", "2400",
+            "aerialway:duration", "7"
+          )
+        )
+      );
+      features.add(
+        feature(
+          rectangle(lon - 0.0001, LAT - 0.0001, 0.0002, 0.0002),
+          Map.of("aerialway", "station", "name", "Lift " + i + " Base")
+        )
+      );
+      features.add(feature(GeoUtils.point(lon + 0.002, LAT), Map.of("aerialway", "pylon")));
+    }
+    return features;
+  }
+
+  /** An airport: its boundary, runways, taxiways, terminal and gates. */
+  private static List<SourceFeature> aeroways() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.015, 600),
+        Map.of(
+          "aeroway", "aerodrome",
+          "name", "Boston Logan International Airport",
+          "iata", "BOS",
+          "icao", "KBOS",
+          "aerodrome:type", "international",
+          "wikidata", "Q671475"
+        )
+      )
+    );
+    for (int i = 0; i < 4; i++) {
+      features.add(
+        feature(
+          wiggly(LON - 0.01, LAT + i * 0.003, 0.02, 0.0001, 2),
+          Map.of("aeroway", "runway", "ref", (4 + i) + "L/" + (22 + i) + "R", "surface", "asphalt")
+        )
+      );
+    }
+    for (int i = 0; i < 20; i++) {
+      features.add(
+        feature(
+          wiggly(LON, LAT + i * 0.0005, 0.005, 0.0003, 8),
+          Map.of("aeroway", "taxiway", "ref", Character.toString('A' + i))
+        )
+      );
+    }
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.003, 0.001),
+        Map.of("aeroway", "terminal", "name", "Terminal B", "building", "yes")
+      )
+    );
+    for (int i = 0; i < 30; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + i * 0.0001, LAT + 0.0012),
+          Map.of("aeroway", "gate", "ref", "B" + i)
+        )
+      );
+    }
+    return features;
+  }
+
+  /** Fences, walls and hedges around a block, with gates and bollards. */
+  private static List<SourceFeature> barriers() {
+    var features = new ArrayList<SourceFeature>();
+    String[] lines = { "fence", "wall", "hedge", "retaining_wall", "guard_rail" };
+    for (int i = 0; i < 40; i++) {
+      features.add(
+        feature(
+          wiggly(LON + (i % 8) * 0.0005, LAT + (i / 8) * 0.0003, 0.0004, 0.00002, 6),
+          Map.of("barrier", lines[i % lines.length], "material", "wood", "height", "1.8")
+        )
+      );
+    }
+    String[] points = { "gate", "bollard", "lift_gate", "kerb", "block" };
+    for (int i = 0; i < 40; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 8) * 0.0005, LAT + (i / 8) * 0.0003),
+          Map.of("barrier", points[i % points.length], "access", "private")
+        )
+      );
+    }
+    return features;
+  }
+
+  /**
+   * Protected areas and a national park. Administrative boundary lines come
+   * from relation membership, which these plain features don't have.
+   */
+  private static List<SourceFeature> boundaries() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.05, 2000),
+        Map.of(
+          "boundary", "national_park",
+          "name", "Boston Harbor Islands National Recreation Area",
+          "protect_class", "5",
+          "operator", "National Park Service",
+          "wikidata", "Q4948057"
+        )
+      )
+    );
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          circle(LON + i * 0.006, LAT + 0.01, 0.002, 120),
+          Map.of(
+            "boundary", "protected_area",
+            "name", "Reservation " + i,
+            "protect_class", Integer.toString(1 + i % 6),
+            "leisure", "nature_reserve"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  private static List<SourceFeature> clubs() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.0008, 0.0005),
+        Map.of("club", "sport", "sport", "rowing", "name", "Union Boat Club", "building", "yes")
+      )
+    );
+    String[] kinds = { "sport", "social", "veterans", "scout", "music", "chess" };
+    for (int i = 0; i < 24; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 6) * 0.0005, LAT + (i / 6) * 0.0005),
+          Map.of(
+            "club", kinds[i % kinds.length],
+            "name", "Club " + i,
+            "website", "https://club.example"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  private static List<SourceFeature> craft() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.0006, 0.0004),
+        Map.of("craft", "brewery", "name", "Harpoon Brewery", "building", "industrial")
+      )
+    );
+    String[] kinds = { "carpenter", "tailor", "shoemaker", "jeweller", "photographer", "plumber" };
+    for (int i = 0; i < 30; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 10) * 0.0003, LAT + (i / 10) * 0.0003),
+          Map.of(
+            "craft", kinds[i % kinds.length],
+            "name", "Workshop " + i,
+            "opening_hours", "Mo-Fr 09:00-17:00"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  /** A university campus, school grounds, and points for smaller schools. */
+  private static List<SourceFeature> education() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.004, 300),
+        Map.of("education", "university", "name", "Boston University", "wikidata", "Q49110")
+      )
+    );
+    for (int i = 0; i < 6; i++) {
+      features.add(
+        feature(
+          rectangle(LON + i * 0.002, LAT + 0.005, 0.001, 0.0006),
+          Map.of("education", "school", "name", "School " + i, "isced:level", "1")
+        )
+      );
+    }
+    String[] kinds = {
+      "kindergarten",
+      "school",
+      "music_school",
+      "driving_school",
+      "language_school",
+    };
+    for (int i = 0; i < 20; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 5) * 0.0006, LAT + (i / 5) * 0.0006),
+          Map.of("education", kinds[i % kinds.length], "name", "Academy " + i)
+        )
+      );
+    }
+    return features;
+  }
+
+  /** Fire hydrants and defibrillators on every block, plus a fire station. */
+  private static List<SourceFeature> emergency() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.0004, 0.0003),
+        Map.of("emergency", "fire_station", "name", "Engine 33", "building", "yes")
+      )
+    );
+    features.add(
+      feature(
+        wiggly(LON, LAT, 0.001, 0.00002, 4),
+        Map.of("emergency", "emergency_ward_entrance")
+      )
+    );
+    String[] kinds = { "fire_hydrant", "fire_hydrant", "defibrillator", "phone", "siren" };
+    for (int i = 0; i < 60; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 12) * 0.0002, LAT + (i / 12) * 0.0002),
+          Map.of(
+            "emergency", kinds[i % kinds.length],
+            "fire_hydrant:type", "pillar",
+            "colour", "red"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  /** Outcrops and moraines, a fault line, and fossil sites. */
+  private static List<SourceFeature> geological() {
+    var features = new ArrayList<SourceFeature>();
+    for (int i = 0; i < 8; i++) {
+      features.add(
+        feature(
+          circle(LON + i * 0.003, LAT, 0.001, 60),
+          Map.of("geological", i % 2 == 0 ? "outcrop" : "moraine", "name", "Ledge " + i)
+        )
+      );
+    }
+    features.add(
+      feature(
+        wiggly(LON, LAT, 0.05, 0.003, 200),
+        Map.of("geological", "fault", "name", "Northern Border Fault")
+      )
+    );
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + i * 0.001, LAT + 0.002),
+          Map.of("geological", "palaeontological_site", "name", "Site " + i)
+        )
+      );
+    }
+    return features;
+  }
+
+  /** A hospital campus, clinics, and doctors' and dentists' offices. */
+  private static List<SourceFeature> healthcare() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.003, 300),
+        Map.of(
+          "healthcare", "hospital",
+          "name", "Brigham and Women's Hospital",
+          "healthcare:speciality", "general",
+          "wikidata", "Q4967359"
+        )
+      )
+    );
+    String[] kinds = {
+      "doctor",
+      "dentist",
+      "pharmacy",
+      "clinic",
+      "physiotherapist",
+      "optometrist",
+    };
+    for (int i = 0; i < 40; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 8) * 0.0003, LAT + (i / 8) * 0.0003),
+          Map.of(
+            "healthcare", kinds[i % kinds.length],
+            "name", "Practice " + i,
+            "opening_hours", "Mo-Fr 08:00-17:00"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  private static List<SourceFeature> landcover() {
+    var features = new ArrayList<SourceFeature>();
+    String[] kinds = { "grass", "trees", "scrub", "sand", "flowerbed" };
+    for (int i = 0; i < 30; i++) {
+      features.add(
+        feature(
+          circle(LON + (i % 6) * 0.002, LAT + (i / 6) * 0.002, 0.0008, 60),
+          Map.of("landcover", kinds[i % kinds.length])
+        )
+      );
+    }
+    return features;
+  }
+
+  /** A park with pitches, playgrounds, a running track and a golf course. */
+  private static List<SourceFeature> leisure() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.004, 400),
+        Map.of("leisure", "park", "name", "Boston Common", "wikidata", "Q895616")
+      )
+    );
+    for (int i = 0; i < 12; i++) {
+      features.add(
+        feature(
+          rectangle(LON + i * 0.0004, LAT, 0.0003, 0.0002),
+          Map.of(
+            "leisure", "pitch",
+            "sport", i % 2 == 0 ? "soccer" : "baseball",
+            "surface", "grass"
+          )
+        )
+      );
+    }
+    features.add(
+      feature(
+        wiggly(LON, LAT, 0.002, 0.0005, 40),
+        Map.of("leisure", "track", "sport", "running", "surface", "tartan")
+      )
+    );
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + i * 0.0003, LAT + 0.001),
+          Map.of("playground", i % 2 == 0 ? "swing" : "slide", "min_age", "2")
+        )
+      );
+    }
+    features.add(
+      feature(
+        circle(LON + 0.01, LAT, 0.005, 300),
+        Map.of("leisure", "golf_course", "name", "Franklin Park Golf Course")
+      )
+    );
+    for (int i = 0; i < 18; i++) {
+      features.add(
+        feature(
+          wiggly(LON + 0.01, LAT + i * 0.0002, 0.0015, 0.0001, 6),
+          Map.of("golf", "hole", "ref", Integer.toString(i + 1), "par", "4")
+        )
+      );
+    }
+    return features;
+  }
+
+  /** Piers and a breakwater, a pipeline, towers and other structures. */
+  private static List<SourceFeature> manMade() {
+    var features = new ArrayList<SourceFeature>();
+    for (int i = 0; i < 6; i++) {
+      features.add(
+        feature(
+          rectangle(LON + i * 0.001, LAT, 0.0002, 0.001),
+          Map.of("man_made", "pier", "name", "Pier " + (i + 1))
+        )
+      );
+    }
+    features.add(
+      feature(
+        wiggly(LON, LAT, 0.04, 0.002, 120),
+        Map.of("man_made", "pipeline", "substance", "gas", "location", "underground")
+      )
+    );
+    features.add(
+      feature(
+        wiggly(LON, LAT - 0.002, 0.003, 0.0002, 20),
+        Map.of("man_made", "breakwater")
+      )
+    );
+    String[] kinds = { "mast", "flagpole", "surveillance", "manhole", "street_cabinet" };
+    for (int i = 0; i < 40; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 8) * 0.0003, LAT + (i / 8) * 0.0003),
+          Map.of("man_made", kinds[i % kinds.length], "operator", "City of Boston")
+        )
+      );
+    }
+    features.add(
+      feature(
+        GeoUtils.point(LON, LAT),
+        Map.of("man_made", "tower", "tower:type", "communication", "height", "220")
+      )
+    );
+    return features;
+  }
+
+  private static List<SourceFeature> military() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        circle(LON, LAT, 0.006, 400),
+        Map.of("military", "base", "name", "Hanscom Air Force Base", "operator", "USAF")
+      )
+    );
+    for (int i = 0; i < 4; i++) {
+      features.add(
+        feature(
+          rectangle(LON + i * 0.001, LAT, 0.0005, 0.0003),
+          Map.of("military", "barracks", "building", "yes")
+        )
+      );
+    }
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + i * 0.0005, LAT + 0.002),
+          Map.of("military", i % 2 == 0 ? "bunker" : "checkpoint", "bunker_type", "pillbox")
+        )
+      );
+    }
+    return features;
+  }
+
+  private static List<SourceFeature> offices() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.0005, 0.0004),
+        Map.of("office", "government", "name", "Boston City Hall", "government", "administrative")
+      )
+    );
+    String[] kinds = { "company", "lawyer", "estate_agent", "insurance", "accountant", "it" };
+    for (int i = 0; i < 60; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 12) * 0.0002, LAT + (i / 12) * 0.0002),
+          Map.of(
+            "office", kinds[i % kinds.length],
+            "name", "Office " + i,
+            "addr:housenumber", Integer.toString(100 + i),
+            "addr:street", "Boylston Street"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  /** A ski area's downhill runs, a cross-country loop and a sledding hill. */
+  private static List<SourceFeature> pistes() {
+    var features = new ArrayList<SourceFeature>();
+    String[] difficulties = { "novice", "easy", "intermediate", "advanced", "expert" };
+    for (int i = 0; i < 20; i++) {
+      features.add(
+        feature(
+          wiggly(LON + i * 0.0008, LAT, 0.004, 0.0004, 30),
+          Map.of(
+            "piste:type", "downhill",
+            "piste:difficulty", difficulties[i % difficulties.length],
+            "piste:grooming", "classic",
+            "piste:name", "Trail " + i
+          )
+        )
+      );
+    }
+    features.add(
+      feature(
+        wiggly(LON, LAT + 0.005, 0.02, 0.002, 200),
+        Map.of("piste:type", "nordic", "piste:grooming", "classic;skating", "name", "Loop")
+      )
+    );
+    features.add(
+      feature(
+        circle(LON, LAT - 0.003, 0.0008, 40),
+        Map.of("piste:type", "sled", "name", "Sledding Hill")
+      )
+    );
+    return features;
+  }
+
+  /** Transmission lines with their towers, a substation and some generators. */
+  private static List<SourceFeature> power() {
+    var features = new ArrayList<SourceFeature>();
+    for (int i = 0; i < 3; i++) {
+      features.add(
+        feature(
+          wiggly(LON, LAT + i * 0.002, 0.05, 0.001, 80),
+          Map.of(
+            "power", "line",
+            "voltage", i == 0 ? "345000" : "115000",
+            "cables", "6",
+            "operator", "Eversource"
+          )
+        )
+      );
+    }
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          wiggly(LON + i * 0.001, LAT - 0.001, 0.002, 0.0001, 10),
+          Map.of("power", "minor_line", "voltage", "13800")
+        )
+      );
+    }
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.0006, 0.0004),
+        Map.of("power", "substation", "substation", "transmission", "voltage", "345000;115000")
+      )
+    );
+    for (int i = 0; i < 50; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + i * 0.001, LAT),
+          Map.of("power", i % 5 == 0 ? "tower" : "pole")
+        )
+      );
+    }
+    features.add(
+      feature(
+        GeoUtils.point(LON, LAT),
+        Map.of(
+          "power", "generator",
+          "generator:source", "solar",
+          "generator:output:electricity", "5 kW"
+        )
+      )
+    );
+    return features;
+  }
+
+  /** A station with its platforms, and bus stops along a route. */
+  private static List<SourceFeature> publicTransport() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.001, 0.0004),
+        Map.of("public_transport", "station", "name", "Back Bay", "train", "yes", "subway", "yes")
+      )
+    );
+    for (int i = 0; i < 4; i++) {
+      features.add(
+        feature(
+          wiggly(LON, LAT + i * 0.0001, 0.0008, 0.00001, 4),
+          Map.of("public_transport", "platform", "ref", Integer.toString(i + 1), "train", "yes")
+        )
+      );
+    }
+    for (int i = 0; i < 40; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + i * 0.0004, LAT + 0.001),
+          Map.of(
+            "public_transport", i % 2 == 0 ? "platform" : "stop_position",
+            "name", "Stop " + i,
+            "bus", "yes",
+            "shelter", "yes",
+            "network", "MBTA"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  /**
+   * Ferry routes mapped directly on ways. Most routes come from relations,
+   * which these plain features aren't members of.
+   */
+  private static List<SourceFeature> routes() {
+    var features = new ArrayList<SourceFeature>();
+    for (int i = 0; i < 6; i++) {
+      features.add(
+        feature(
+          wiggly(LON, LAT + i * 0.002, 0.04, 0.005, 80),
+          Map.of(
+            "route", "ferry",
+            "name", "Harbor Ferry " + i,
+            "operator", "MBTA",
+            "duration", "00:20",
+            "foot", "yes"
+          )
+        )
+      );
+    }
+    return features;
+  }
+
+  /** Hotels, museums and viewpoints, and an amusement park with its attractions. */
+  private static List<SourceFeature> tourism() {
+    var features = new ArrayList<SourceFeature>();
+    features.add(
+      feature(
+        rectangle(LON, LAT, 0.0008, 0.0006),
+        Map.of("tourism", "museum", "name", "Museum of Fine Arts", "wikidata", "Q49133")
+      )
+    );
+    String[] kinds = { "hotel", "guest_house", "viewpoint", "artwork", "information", "hostel" };
+    for (int i = 0; i < 40; i++) {
+      features.add(
+        feature(
+          GeoUtils.point(LON + (i % 8) * 0.0003, LAT + (i / 8) * 0.0003),
+          Map.of(
+            "tourism", kinds[i % kinds.length],
+            "name", "Stay " + i,
+            "stars", "3",
+            "rooms", "120"
+          )
+        )
+      );
+    }
+    features.add(
+      feature(
+        circle(LON + 0.01, LAT, 0.003, 200),
+        Map.of("tourism", "theme_park", "name", "Canobie Lake Park")
+      )
+    );
+    for (int i = 0; i < 10; i++) {
+      features.add(
+        feature(
+          i % 2 == 0
+            ? GeoUtils.point(LON + 0.01 + i * 0.0002, LAT)
+            : wiggly(LON + 0.01, LAT + i * 0.0002, 0.001, 0.0002, 20),
+          Map.of("attraction", i % 2 == 0 ? "carousel" : "roller_coaster", "name", "Ride " + i)
+        )
+      );
+    }
+    return features;
+  }
+
+  private static SourceFeature feature(Geometry latLonGeometry, Map<String, Object> tags) {
+    return SimpleFeature.create(latLonGeometry, new HashMap<>(tags));
+  }
+
+  private static Geometry rectangle(double lon, double lat, double width, double height) {
+    return GeoUtils.JTS_FACTORY.createPolygon(
+      new Coordinate[] {
+        new Coordinate(lon, lat),
+        new Coordinate(lon + width, lat),
+        new Coordinate(lon + width, lat + height),
+        new Coordinate(lon, lat + height),
+        new Coordinate(lon, lat),
+      }
+    );
+  }
+
+  /** A polygon approximating a circle, with the given number of vertices. */
+  private static Geometry circle(double lon, double lat, double radius, int points) {
+    var coords = new Coordinate[points + 1];
+    for (int i = 0; i < points; i++) {
+      double angle = 2 * Math.PI * i / points;
+      // vary the radius slightly so that simplification has real work to do
+      double r = radius * (1 + 0.05 * Math.sin(angle * 7));
+      coords[i] = new Coordinate(lon + r * Math.cos(angle), lat + r * Math.sin(angle));
+    }
+    coords[points] = coords[0];
+    return GeoUtils.JTS_FACTORY.createPolygon(coords);
+  }
+
+  /** A line heading east, wiggling north and south along the way. */
+  private static Geometry wiggly(double lon, double lat, double length, double amp, int points) {
+    var coords = new Coordinate[points];
+    for (int i = 0; i < points; i++) {
+      double t = (double) i / (points - 1);
+      coords[i] = new Coordinate(lon + t * length, lat + amp * Math.sin(t * Math.PI * 6));
+    }
+    return GeoUtils.JTS_FACTORY.createLineString(coords);
+  }
+}
@@ -0,0 +1,150 @@
+package fyi.osm.sourdough.bench;
+
+import com.onthegomap.planetiler.ForwardingProfile.LayerPostProcessor;
+import com.onthegomap.planetiler.VectorTile;
+import com.onthegomap.planetiler.geo.GeometryException;
+import fyi.osm.sourdough.Builder;
+import fyi.osm.sourdough.Configuration;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays recorded inputs through each layer's {@code postProcess} (and so its
+ * {@link com.onthegomap.planetiler.FeatureMerge} pipeline). Record inputs by
+ * building a dense area with {@code --record_postprocess}, e.g.:
+ *
+ * <pre>
+ * java -jar target/sourdough-builder-HEAD-with-deps.jar --area=new-york \
+ *   --record_postprocess=data/postprocess
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="PostProcessBenchmark -prof gc"
+ * </pre>
+ *
+ * <p>Recordings from several areas can be combined in one directory (they are
+ * all replayed on each invocation). Before running, the feature and byte
+ * counts of each layer's input and output are logged, so the effect of
+ * changing merge parameters on tile size can be compared alongside the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PostProcessBenchmark {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PostProcessBenchmark.class);
+
+  @Param("data/postprocess")
+  public String recordings;
+
+  @Param(
+    {
+      "aeroways",
+      "amenities",
+      "barriers",
+      "boundaries",
+      "buildings",
+      "highways",
+      "landcover",
+      "landuse",
+      "leisure",
+      "man_made",
+      "natural",
+      "power",
+      "railways",
+      "routes",
+      "water",
+      "waterways",
+    }
+  )
+  public String layer;
+
+  @Param("14")
+  public int zoom;
+
+  private LayerPostProcessor processor;
+  private List<byte[]> encoded;
+  private List<List<VectorTile.Feature>> inputs;
+
+  @Setup(Level.Trial)
+  public void load() throws IOException, GeometryException {
+    processor = (LayerPostProcessor) Builder.createLayer(layer, Configuration.defaults());
+
+    encoded = new ArrayList<>();
+    var prefix = layer + "-z" + zoom + "-";
+    try (var files = Files.list(Path.of(recordings))) {
+      for (var file : files.sorted().toList()) {
+        if (file.getFileName().toString().startsWith(prefix)) {
+          encoded.add(Files.readAllBytes(file));
+        }
+      }
+    }
+    if (encoded.isEmpty()) {
+      throw new IllegalStateException(
+        "No recordings for " + layer + " at z" + zoom + " in " + recordings
+      );
+    }
+
+    long inFeatures = 0;
+    long outFeatures = 0;
+    long inBytes = 0;
+    long outBytes = 0;
+    for (var bytes : encoded) {
+      var input = decode(bytes);
+      inFeatures += input.size();
+      inBytes += bytes.length;
+      var output = processor.postProcess(zoom, input);
+      outFeatures += output.size();
+      outBytes += new VectorTile().addLayerFeatures(layer, output).encode().length;
+    }
+    LOGGER.info(
+      "{} z{}: {} recordings, {} -> {} features, {} -> {} bytes",
+      layer,
+      zoom,
+      encoded.size(),
+      inFeatures,
+      outFeatures,
+      inBytes,
+      outBytes
+    );
+  }
+
+  // postProcess may modify its input features, so give each call fresh copies
+  @Setup(Level.Invocation)
+  public void decodeInputs() {
+    inputs = new ArrayList<>(encoded.size());
+    for (var bytes : encoded) {
+      inputs.add(decode(bytes));
+    }
+  }
+
+  private static List<VectorTile.Feature> decode(byte[] bytes) {
+    return new ArrayList<>(VectorTile.decode(bytes));
+  }
+
+  @Benchmark
+  public void postProcess(Blackhole blackhole) throws GeometryException {
+    for (var input : inputs) {
+      blackhole.consume(processor.postProcess(zoom, input));
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package fyi.osm.sourdough.bench;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.reader.SimpleFeature;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.stats.Stats;
+import fyi.osm.sourdough.Builder;
+import fyi.osm.sourdough.Configuration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Feeds a polygon tagged for several layers (a named historic school
+ * building) through each of those layers, the way a build dispatches it:
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="SharedFeatureBenchmark -prof gc"
+ * </pre>
+ *
+ * <p>With {@code shared}, every layer gets the same source feature, which
+ * builds its projected polygon, validated polygon, label point and area the
+ * first time a layer asks for them and hands the same ones to the rest. With
+ * {@code separate}, each layer gets a fresh copy of the feature, so each
+ * builds them again: the difference is what sharing the feature saves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SharedFeatureBenchmark {
+
+  private static final List<String> LAYERS = List.of("amenities", "buildings", "historic");
+
+  @Param({ "shared", "separate" })
+  public String dispatch;
+
+  @Param({ "20", "400" })
+  public int vertices;
+
+  private List<FeatureProcessor> processors;
+  private FeatureCollector.Factory factory;
+  private Geometry geometry;
+  private Map<String, Object> tags;
+
+  @Setup
+  public void setup() {
+    var config = Configuration.defaults();
+    processors = LAYERS.stream()
+      .map(name -> (FeatureProcessor) Builder.createLayer(name, config))
+      .toList();
+    factory = new FeatureCollector.Factory(PlanetilerConfig.defaults(), Stats.inMemory());
+    geometry = polygon(-71.0810, 42.3505, 0.0008, vertices);
+    tags = Map.of(
+      "building",
+      "school",
+      "amenity",
+      "school",
+      "historic",
+      "building",
+      "name",
+      "Boston Latin School",
+      "wikidata",
+      "Q1541936",
+      "start_date",
+      "1844"
+    );
+  }
+
+  @Benchmark
+  public void processFeature(Blackhole blackhole) {
+    var sf = feature();
+    var fc = factory.get(sf);
+    for (var processor : processors) {
+      if (dispatch.equals("separate")) {
+        sf = feature();
+        fc = factory.get(sf);
+      }
+      processor.processFeature(sf, fc);
+      blackhole.consume(fc);
+    }
+  }
+
+  private SourceFeature feature() {
+    return SimpleFeature.create(geometry, new HashMap<>(tags));
+  }
+
+  /** A slightly irregular polygon, so that finding a point on its surface takes some work. */
+  private static Geometry polygon(double lon, double lat, double radius, int points) {
+    var coords = new Coordinate[points + 1];
+    for (int i = 0; i < points; i++) {
+      double angle = 2 * Math.PI * i / points;
+      double r = radius * (i % 2 == 0 ? 1 : 0.8);
+      coords[i] = new Coordinate(lon + r * Math.cos(angle), lat + r * Math.sin(angle));
+    }
+    coords[points] = coords[0];
+    return GeoUtils.JTS_FACTORY.createPolygon(coords);
+  }
+}
@@ -1,8 +1,19 @@
 package fyi.osm.sourdough;
 
+import com.onthegomap.planetiler.FeatureCollector;
 import com.onthegomap.planetiler.ForwardingProfile;
 import com.onthegomap.planetiler.Planetiler;
+import com.onthegomap.planetiler.VectorTile;
 import com.onthegomap.planetiler.config.Arguments;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.expression.Expression;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.geo.GeometryType;
+import com.onthegomap.planetiler.geo.TileCoord;
+import com.onthegomap.planetiler.reader.SimpleFeature;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import fyi.osm.sourdough.definitions.DefinedLayer;
+import fyi.osm.sourdough.definitions.LayerSpec;
 import fyi.osm.sourdough.layers.Advertising;
 import fyi.osm.sourdough.layers.Aerialways;
 import fyi.osm.sourdough.layers.Aeroways;
@@ -35,59 +46,535 @@ import fyi.osm.sourdough.layers.Shops;
 import fyi.osm.sourdough.layers.Tourism;
 import fyi.osm.sourdough.layers.Water;
 import fyi.osm.sourdough.layers.Waterways;
+import fyi.osm.sourdough.serve.TileServer;
+import fyi.osm.sourdough.tiles.ArchiveSplicer;
+import fyi.osm.sourdough.tiles.LayerGroupSplitter;
+import fyi.osm.sourdough.tiles.TileRegion;
+import fyi.osm.sourdough.tiles.TileSet;
+import fyi.osm.sourdough.update.ChangeTracker;
+import fyi.osm.sourdough.update.ChangedExtents;
+import fyi.osm.sourdough.update.ExtentIndex;
+import fyi.osm.sourdough.update.OsmChange;
+import fyi.osm.sourdough.util.CalibrationStats;
+import fyi.osm.sourdough.util.DuplicateLabels;
+import fyi.osm.sourdough.util.LayerStats;
+import fyi.osm.sourdough.util.MinZoomOffsets;
+import fyi.osm.sourdough.util.OceanFill;
+import fyi.osm.sourdough.util.ParseCache;
+import fyi.osm.sourdough.util.PostProcessRecorder;
+import fyi.osm.sourdough.util.RelationTypes;
+import fyi.osm.sourdough.util.SlimExtract;
+import fyi.osm.sourdough.util.TileBudget;
+import fyi.osm.sourdough.util.WaterPolygonCache;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Builder extends ForwardingProfile {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(Builder.class);
+
+  // the most ocean polygons a build reads from the water polygon cache, rather than the shapefile
+  private static final int MAX_CACHED_OCEAN_POLYGONS = 2000;
+
+  // minZoom is the lowest zoom the layer's features appear at, which ranks it
+  // against other layers when trimming tiles to the tile budget
+  private record LayerDefinition(
+    String name,
+    int minZoom,
+    Set<String> primaryTags,
+    Function<Configuration, Handler> constructor
+  ) {}
+
+  private static final List<LayerDefinition> LAYERS = List.of(
+    new LayerDefinition(Advertising.LAYER_NAME, 10, Advertising.PRIMARY_TAGS, Advertising::new),
+    new LayerDefinition(Aerialways.LAYER_NAME, 2, Aerialways.PRIMARY_TAGS, Aerialways::new),
+    new LayerDefinition(Aeroways.LAYER_NAME, 2, Aeroways.PRIMARY_TAGS, Aeroways::new),
+    new LayerDefinition(Amenities.LAYER_NAME, 2, Amenities.PRIMARY_TAGS, Amenities::new),
+    new LayerDefinition(Barriers.LAYER_NAME, 11, Barriers.PRIMARY_TAGS, Barriers::new),
+    new LayerDefinition(Boundaries.LAYER_NAME, 0, Boundaries.PRIMARY_TAGS, Boundaries::new),
+    new LayerDefinition(Buildings.LAYER_NAME, 11, Buildings.PRIMARY_TAGS, Buildings::new),
+    new LayerDefinition(Clubs.LAYER_NAME, 8, Clubs.PRIMARY_TAGS, Clubs::new),
+    new LayerDefinition(Craft.LAYER_NAME, 10, Craft.PRIMARY_TAGS, Craft::new),
+    new LayerDefinition(Education.LAYER_NAME, 8, Education.PRIMARY_TAGS, Education::new),
+    new LayerDefinition(Emergency.LAYER_NAME, 2, Emergency.PRIMARY_TAGS, Emergency::new),
+    new LayerDefinition(Geological.LAYER_NAME, 6, Geological.PRIMARY_TAGS, Geological::new),
+    new LayerDefinition(Healthcare.LAYER_NAME, 2, Healthcare.PRIMARY_TAGS, Healthcare::new),
+    new LayerDefinition(Highways.LAYER_NAME, 3, Highways.PRIMARY_TAGS, Highways::new),
+    new LayerDefinition(Historic.LAYER_NAME, 2, Historic.PRIMARY_TAGS, Historic::new),
+    new LayerDefinition(Landcover.LAYER_NAME, 6, Landcover.PRIMARY_TAGS, Landcover::new),
+    new LayerDefinition(Landuse.LAYER_NAME, 2, Landuse.PRIMARY_TAGS, Landuse::new),
+    new LayerDefinition(Leisure.LAYER_NAME, 2, Leisure.PRIMARY_TAGS, Leisure::new),
+    new LayerDefinition(ManMade.LAYER_NAME, 2, ManMade.PRIMARY_TAGS, ManMade::new),
+    new LayerDefinition(Military.LAYER_NAME, 2, Military.PRIMARY_TAGS, Military::new),
+    new LayerDefinition(Natural.LAYER_NAME, 2, Natural.PRIMARY_TAGS, Natural::new),
+    new LayerDefinition(Offices.LAYER_NAME, 2, Offices.PRIMARY_TAGS, Offices::new),
+    new LayerDefinition(Pistes.LAYER_NAME, 12, Pistes.PRIMARY_TAGS, Pistes::new),
+    new LayerDefinition(Places.LAYER_NAME, 0, Places.PRIMARY_TAGS, Places::new),
+    new LayerDefinition(Power.LAYER_NAME, 6, Power.PRIMARY_TAGS, Power::new),
+    new LayerDefinition(
+      PublicTransport.LAYER_NAME,
+      8,
+      PublicTransport.PRIMARY_TAGS,
+      PublicTransport::new
+    ),
+    new LayerDefinition(Railways.LAYER_NAME, 0, Railways.PRIMARY_TAGS, Railways::new),
+    new LayerDefinition(Routes.LAYER_NAME, 6, Routes.PRIMARY_TAGS, Routes::new),
+    new LayerDefinition(Shops.LAYER_NAME, 2, Shops.PRIMARY_TAGS, Shops::new),
+    new LayerDefinition(Tourism.LAYER_NAME, 2, Tourism.PRIMARY_TAGS, Tourism::new),
+    new LayerDefinition(Water.LAYER_NAME, 0, Water.PRIMARY_TAGS, Water::new),
+    new LayerDefinition(Waterways.LAYER_NAME, 2, Waterways.PRIMARY_TAGS, Waterways::new)
+  );
+
+  // built-in layers that use more than a layer definition can describe (the ocean polygon
+  // shapefile, or relation preprocessing), so can't be replaced by one
+  private static final Set<String> IRREPLACEABLE_LAYERS = Set.of(
+    Boundaries.LAYER_NAME,
+    Routes.LAYER_NAME,
+    Water.LAYER_NAME
+  );
+
+  /** Names of all layers in the schema, in the order they are registered. */
+  public static final List<String> LAYER_NAMES = LAYERS.stream()
+    .map(LayerDefinition::name)
+    .toList();
+
   private final Configuration config;
+  private final List<LayerDefinition> layers;
+  private final LayerStats layerStats;
+  private PostProcessRecorder recorder = null;
+  private TileBudget tileBudget = null;
+  private DuplicateLabels duplicateLabels = null;
+  private CalibrationStats calibrationStats = null;
+  private MinZoomOffsets minZoomOffsets = null;
+  private ChangeTracker changeTracker = null;
+  private ExtentIndex.Writer extentIndex = null;
+  private final OceanFill oceanFill = new OceanFill();
+  private Water water = null;
+  // the handler for ocean polygons, instrumented if layer stats are on
+  private FeatureProcessor ocean = null;
+  private WaterPolygonCache.Writer waterCacheWriter = null;
+  private WaterPolygonCache waterCache = null;
+  private Supplier<Envelope> waterCacheBounds = null;
+
+  // each layer's primary tags in a fixed order, so that feature classes are
+  // the same from one build to the next
+  private final Map<String, List<String>> sortedPrimaryTags;
 
   public Builder(Configuration config) {
+    this(config, layerNames(resolveLayers(config.layerDefinitions())));
+  }
+
+  /**
+   * Creates a profile that only builds the named layers. Layers that are left
+   * out are never constructed, so their filters, relation preprocessing and
+   * source handlers cost nothing.
+   */
+  public Builder(Configuration config, Collection<String> layerNames) {
+    this(config, layerNames, null);
+  }
+
+  /**
+   * Creates a profile that only builds the named layers, and records how much
+   * work each layer does in {@code stats} (if it isn't null).
+   */
+  public Builder(Configuration config, Collection<String> layerNames, LayerStats stats) {
     this.config = config;
-    var layers = List.of(
-      new Advertising(config),
-      new Aerialways(config),
-      new Aeroways(config),
-      new Amenities(config),
-      new Barriers(config),
-      new Boundaries(config),
-      new Buildings(config),
-      new Clubs(config),
-      new Craft(config),
-      new Education(config),
-      new Emergency(config),
-      new Geological(config),
-      new Healthcare(config),
-      new Highways(config),
-      new Historic(config),
-      new Landcover(config),
-      new Landuse(config),
-      new Leisure(config),
-      new ManMade(config),
-      new Military(config),
-      new Natural(config),
-      new Offices(config),
-      new Pistes(config),
-      new Places(config),
-      new Power(config),
-      new PublicTransport(config),
-      new Railways(config),
-      new Routes(config),
-      new Shops(config),
-      new Tourism(config),
-      new Water(config),
-      new Waterways(config)
-    );
-
-    for (var layer : layers) {
-      registerHandler(layer);
+    this.layerStats = stats;
+    this.layers = resolveLayers(config.layerDefinitions());
+    this.sortedPrimaryTags = layers
+      .stream()
+      .collect(
+        Collectors.toMap(LayerDefinition::name, d -> d.primaryTags().stream().sorted().toList())
+      );
+
+    for (var definition : layers) {
+      if (!layerNames.contains(definition.name())) {
+        continue;
+      }
+
+      var layer = definition.constructor().apply(config);
+      registerHandler(stats == null ? layer : stats.instrument(definition.name(), layer));
 
       // Water layer has special requirement for preprocessed ocean data
-      if (layer instanceof Water) {
-        registerSourceHandler("osm_water", ((Water) layer)::processPreparedOsm);
+      if (layer instanceof Water water) {
+        this.water = water;
+        FeatureProcessor processor = this::processOcean;
+        this.ocean = stats == null
+          ? processor
+          : stats.instrumentSource(Water.LAYER_NAME, processor);
+        registerSourceHandler("osm_water", ocean);
+      }
+    }
+  }
+
+  /**
+   * Records the largest inputs to each layer's post-processing in
+   * {@code recorder}, for replaying in benchmarks.
+   */
+  public Builder recordPostProcessInputs(PostProcessRecorder recorder) {
+    this.recorder = recorder;
+    return this;
+  }
+
+  @Override
+  public List<VectorTile.Feature> postProcessLayerFeatures(
+    String layer,
+    int zoom,
+    List<VectorTile.Feature> items
+  ) throws GeometryException {
+    if (recorder != null) {
+      recorder.offer(layer, zoom, items);
+    }
+    return super.postProcessLayerFeatures(layer, zoom, items);
+  }
+
+  /** Records statistics for calibrating min zooms in {@code stats}. */
+  public Builder collectCalibrationStats(CalibrationStats stats) {
+    this.calibrationStats = stats;
+    return this;
+  }
+
+  /** Shifts the min zoom of point features by class, as given in {@code offsets}. */
+  public Builder applyMinZoomOffsets(MinZoomOffsets offsets) {
+    this.minZoomOffsets = offsets;
+    return this;
+  }
+
+  /** Saves the ocean polygons read from the shapefile to {@code writer}, for later builds. */
+  public Builder writeWaterPolygonCache(WaterPolygonCache.Writer writer) {
+    this.waterCacheWriter = writer;
+    return this;
+  }
+
+  /**
+   * Reads the ocean polygons within {@code bounds} (lat/lon, known once the
+   * build has started) from {@code cache} instead of the shapefile.
+   */
+  public Builder readWaterPolygonCache(WaterPolygonCache cache, Supplier<Envelope> bounds) {
+    this.waterCache = cache;
+    this.waterCacheBounds = bounds;
+    return this;
+  }
+
+  private void processOcean(SourceFeature sf, FeatureCollector fc) {
+    if (waterCacheWriter != null) {
+      try {
+        waterCacheWriter.add(sf.latLonGeometry());
+      } catch (GeometryException e) {
+        // the water layer can't use an invalid polygon either
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    water.processPreparedOsm(sf, fc);
+  }
+
+  @Override
+  public void finish(
+    String sourceName,
+    FeatureCollector.Factory featureCollectors,
+    Consumer<FeatureCollector.Feature> next
+  ) {
+    super.finish(sourceName, featureCollectors, next);
+    // cached ocean polygons stand in for the shapefile source, once the OSM data is read;
+    // this runs on one thread, so it's only used for builds that need few of them
+    if (waterCache != null && water != null && sourceName.equals("osm")) {
+      long[] id = { 0 };
+      try {
+        waterCache.query(waterCacheBounds.get(), polygon -> {
+          var sf = SimpleFeature.create(polygon, Map.of(), "osm_water", null, id[0]++);
+          var fc = featureCollectors.get(sf);
+          ocean.processFeature(sf, fc);
+          if (layerStats != null) {
+            layerStats.countEmitted(fc);
+          }
+          for (var feature : fc) {
+            next.accept(feature);
+          }
+        });
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      LOGGER.info("Read {} ocean polygons from the water polygon cache", id[0]);
+    }
+  }
+
+  /** Watches for features touched by an update that lie outside the rebuilt tiles. */
+  public Builder trackChanges(ChangeTracker tracker) {
+    this.changeTracker = tracker;
+    return this;
+  }
+
+  /** Records where each element's features are in {@code writer}, for later updates. */
+  public Builder writeExtentIndex(ExtentIndex.Writer writer) {
+    this.extentIndex = writer;
+    return this;
+  }
+
+  @Override
+  public void processFeature(SourceFeature sf, FeatureCollector fc) {
+    super.processFeature(sf, fc);
+    if (layerStats != null) {
+      layerStats.countEmitted(fc);
+    }
+    if (calibrationStats != null || minZoomOffsets != null) {
+      calibrate(sf, fc);
+    }
+    if (changeTracker != null) {
+      changeTracker.observe(sf);
+    }
+    if (extentIndex != null && fc.iterator().hasNext()) {
+      try {
+        extentIndex.add(sf);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Applies min zoom offsets to, and records calibration statistics for, the
+   * features that layers created from {@code sf}. Features are classed by
+   * layer and the value of the layer's first primary tag (e.g. a town in the
+   * places layer is {@code places/town}).
+   */
+  private void calibrate(SourceFeature sf, FeatureCollector fc) {
+    for (var feature : fc) {
+      var key = featureClass(sf, feature.getLayer());
+      if (key == null) {
+        continue;
+      }
+      try {
+        if (feature.getGeometryType() == GeometryType.POINT) {
+          if (minZoomOffsets != null) {
+            int offset = minZoomOffsets.offset(key);
+            if (offset != 0) {
+              feature.setMinZoom(Math.clamp(feature.getMinZoom() + offset, 0, 14));
+            }
+          }
+          if (calibrationStats != null) {
+            var centroid = sf.centroid().getCoordinate();
+            calibrationStats.recordPoint(key, centroid.x, centroid.y, feature.getMinZoom());
+          }
+        } else if (
+          feature.getGeometryType() == GeometryType.POLYGON && calibrationStats != null
+        ) {
+          calibrationStats.recordArea(key, sf.area());
+        }
+      } catch (GeometryException e) {
+        // leave features with invalid geometries as they are
+      }
+    }
+  }
+
+  private String featureClass(SourceFeature sf, String layer) {
+    for (var key : sortedPrimaryTags.getOrDefault(layer, List.of())) {
+      var value = sf.getString(key);
+      if (value != null) {
+        return layer + "/" + value;
+      }
+    }
+    return null;
+  }
+
+  /** Trims tiles that exceed {@code tileBudget} to fit it. */
+  public Builder enforceTileBudget(TileBudget tileBudget) {
+    this.tileBudget = tileBudget;
+    return this;
+  }
+
+  /** Slims labels that several layers emit for the same element, using {@code duplicateLabels}. */
+  public Builder slimDuplicateLabels(DuplicateLabels duplicateLabels) {
+    this.duplicateLabels = duplicateLabels;
+    return this;
+  }
+
+  @Override
+  public Map<String, List<VectorTile.Feature>> postProcessTileFeatures(
+    TileCoord tileCoord,
+    Map<String, List<VectorTile.Feature>> layers
+  ) throws GeometryException {
+    layers = oceanFill.apply(tileCoord, super.postProcessTileFeatures(tileCoord, layers));
+    // trim first, so that slimmed labels only point at canonical labels that the tile keeps
+    if (tileBudget != null) {
+      layers = tileBudget.apply(tileCoord, layers);
+    }
+    return duplicateLabels == null ? layers : duplicateLabels.apply(layers);
+  }
+
+  /** Returns the primary tags of the named layer, which are kept when trimming tiles. */
+  public Set<String> primaryTags(String name) {
+    for (var definition : layers) {
+      if (definition.name().equals(name)) {
+        return definition.primaryTags();
+      }
+    }
+    return Set.of();
+  }
+
+  /** Returns the lowest zoom the named layer's features appear at. */
+  public int layerMinZoom(String name) {
+    for (var definition : layers) {
+      if (definition.name().equals(name)) {
+        return definition.minZoom();
+      }
+    }
+    return PlanetilerConfig.MAX_MAXZOOM;
+  }
+
+  /**
+   * Creates the handler for the named layer on its own, outside of a profile
+   * (e.g. for benchmarks).
+   */
+  public static Handler createLayer(String name, Configuration config) {
+    for (var definition : resolveLayers(config.layerDefinitions())) {
+      if (definition.name().equals(name)) {
+        return definition.constructor().apply(config);
+      }
+    }
+    throw new IllegalArgumentException("Unknown layer '" + name + "'");
+  }
+
+  /**
+   * Returns the built-in layers, with any defined in {@code specs} replacing
+   * the built-in layer of the same name (or added after them, if new).
+   */
+  private static List<LayerDefinition> resolveLayers(List<LayerSpec> specs) {
+    var result = new ArrayList<>(LAYERS);
+    for (var spec : specs) {
+      var definition = new LayerDefinition(
+        spec.name(),
+        DefinedLayer.minZoom(spec),
+        spec.primaryTags() == null ? Set.of() : Set.copyOf(spec.primaryTags()),
+        config -> new DefinedLayer(spec, config)
+      );
+      int existing = layerNames(result).indexOf(spec.name());
+      if (existing >= 0 && IRREPLACEABLE_LAYERS.contains(spec.name())) {
+        throw new IllegalArgumentException(
+          "Layer definitions can't replace the built-in " + spec.name() + " layer"
+        );
+      }
+      if (existing >= 0) {
+        result.set(existing, definition);
+      } else {
+        result.add(definition);
       }
     }
+    return result;
+  }
+
+  private static List<String> layerNames(List<LayerDefinition> layers) {
+    return layers.stream().map(LayerDefinition::name).toList();
+  }
+
+  /** Returns the filter expressions of the named layers, which select the elements they use. */
+  private static List<Expression> layerFilters(List<String> names, List<LayerSpec> definitions) {
+    var config = new Configuration(null, List.of(), 0, Map.of(), false, definitions);
+    var filters = new ArrayList<Expression>();
+    for (var name : names) {
+      if (createLayer(name, config) instanceof FeatureProcessor processor) {
+        filters.add(processor.filter());
+      }
+    }
+    return filters;
+  }
+
+  /** Returns the types of relations the named layers read through relation preprocessing. */
+  private static Set<String> layerRelationTypes(List<String> names, List<LayerSpec> definitions) {
+    var config = new Configuration(null, List.of(), 0, Map.of(), false, definitions);
+    var types = new TreeSet<String>();
+    for (var name : names) {
+      if (createLayer(name, config) instanceof RelationTypes layer) {
+        types.addAll(layer.relationTypes());
+      }
+    }
+    return types;
+  }
+
+  /**
+   * Returns the names of the layers to build: all layers in {@code include}
+   * (or all available layers, if it is empty), minus any in {@code exclude}.
+   */
+  static List<String> selectLayers(
+    List<String> available,
+    List<String> include,
+    List<String> exclude
+  ) {
+    for (var name : Stream.concat(include.stream(), exclude.stream()).toList()) {
+      if (!available.contains(name)) {
+        throw new IllegalArgumentException(
+          "Unknown layer '" + name + "', expected one of: " + String.join(", ", available)
+        );
+      }
+    }
+
+    return available.stream()
+      .filter(name -> include.isEmpty() || include.contains(name))
+      .filter(name -> !exclude.contains(name))
+      .toList();
+  }
+
+  /**
+   * Parses layer groups given as {@code name:layer+layer+...} strings, and
+   * checks that each group only refers to layers that are being built, and
+   * that its archive (written next to {@code output}) won't replace the output.
+   */
+  static Map<String, List<String>> parseLayerGroups(
+    List<String> specs,
+    List<String> layers,
+    Path output
+  ) {
+    var groups = new LinkedHashMap<String, List<String>>();
+    var target = output.toAbsolutePath().normalize();
+    for (var spec : specs) {
+      var parts = spec.split(":", 2);
+      if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+        throw new IllegalArgumentException(
+          "Invalid layer group '" + spec + "', expected name:layer+layer+..."
+        );
+      }
+      if (parts[0].contains("/") || parts[0].contains("\\") || parts[0].startsWith(".")) {
+        throw new IllegalArgumentException(
+          "Invalid layer group name '" + parts[0] + "', it's used as a file name"
+        );
+      }
+      if (target.resolveSibling(parts[0] + ".pmtiles").equals(target)) {
+        throw new IllegalArgumentException(
+          "Layer group '" + parts[0] + "' would overwrite the output archive " + output
+        );
+      }
+      var groupLayers = List.of(parts[1].split("\\+"));
+      for (var layer : groupLayers) {
+        if (!layers.contains(layer)) {
+          throw new IllegalArgumentException(
+            "Layer group '" + parts[0] + "' refers to layer '" + layer + "', which is not built"
+          );
+        }
+      }
+      if (groups.put(parts[0], groupLayers) != null) {
+        throw new IllegalArgumentException("Duplicate layer group '" + parts[0] + "'");
+      }
+    }
+    return groups;
   }
 
   @Override
@@ -116,6 +603,10 @@ public class Builder extends ForwardingProfile {
   }
 
   public static void main(String[] args) throws IOException {
+    if (args.length > 0 && args[0].equals("serve")) {
+      TileServer.run(Arguments.fromArgs(Arrays.copyOfRange(args, 1, args.length)));
+      return;
+    }
     run(Arguments.fromArgsOrConfigFile(args));
   }
 
@@ -127,16 +618,325 @@ public class Builder extends ForwardingProfile {
       "language code for name substitution (e.g. 'es' for Spanish)",
       null
     );
+    List<String> languages = args.getList(
+      "languages",
+      "language codes to include as extra name:xx attributes (e.g. 'en,fr,de')",
+      List.of()
+    );
+    int languagesMinZoom = args.getInteger(
+      "languages_minzoom",
+      "lowest zoom to include the extra name:xx attributes at",
+      0
+    );
+
+    String layerDefinitionsPath = args.getString(
+      "layer_definitions",
+      "JSON file of layer definitions, replacing built-in layers of the same name",
+      ""
+    );
+    List<LayerSpec> layerDefinitions = layerDefinitionsPath.isEmpty()
+      ? List.of()
+      : LayerSpec.read(Path.of(layerDefinitionsPath));
 
-    var planetiler = Planetiler.create(args)
-      .addOsmSource("osm", Path.of("data", "sources", area + ".osm.pbf"), "geofabrik:" + area)
-      .addShapefileSource(
-        "osm_water",
-        Path.of("data", "sources", "water-polygons-split-3857.zip"),
-        "https://osmdata.openstreetmap.de/download/water-polygons-split-3857.zip"
+    List<String> layers = selectLayers(
+      layerNames(resolveLayers(layerDefinitions)),
+      args.getList("layers", "only build these layers (e.g. 'highways,water,places')", List.of()),
+      args.getList("exclude_layers", "don't build these layers", List.of())
+    );
+
+    Path output = Path.of(args.getString("output", "output archive", "data/sourdough.pmtiles"));
+    String basePath = args.getString("base", "existing archive to splice rebuilt tiles into", "");
+    String oscPath = args.getString(
+      "osc",
+      "OsmChange file (e.g. a daily diff) to update --base with, using an updated --area extract",
+      ""
+    );
+    String rebuildBounds = args.getString(
+      "rebuild_bounds",
+      "only rebuild tiles within these bounds (west,south,east,north) and splice them into --base",
+      ""
+    );
+    // the largest buffer any layer gives its features
+    int rebuildBuffer = args.getInteger(
+      "rebuild_buffer",
+      "pixels around the changed area to also rebuild, for features buffered into nearby tiles",
+      64
+    );
+    boolean writeExtentIndex = args.getBoolean(
+      "extent_index",
+      "record where each element's features are, so later --osc updates can find deleted elements",
+      false
+    );
+    Path extract = Path.of("data", "sources", area + ".osm.pbf");
+    OsmChange change = null;
+    TileSet rebuildTiles = null;
+    if (!oscPath.isEmpty() || !rebuildBounds.isEmpty()) {
+      if (!oscPath.isEmpty() && !rebuildBounds.isEmpty()) {
+        throw new IllegalArgumentException("Use either --osc or --rebuild_bounds, not both");
+      }
+      if (basePath.isEmpty() || Path.of(basePath).equals(output)) {
+        throw new IllegalArgumentException(
+          "--osc and --rebuild_bounds need a --base archive other than --output"
+        );
+      }
+      int maxZoom = args.getInteger("maxzoom", "maximum zoom level", 15);
+      int bufferTiles = (rebuildBuffer + 255) / 256;
+      var baseIndex = ExtentIndex.pathFor(Path.of(basePath));
+      if (!oscPath.isEmpty()) {
+        change = OsmChange.read(Path.of(oscPath));
+        var extents = ChangedExtents.resolve(change, extract, baseIndex);
+        rebuildTiles = TileSet.covering(extents, maxZoom, bufferTiles);
+      } else {
+        rebuildTiles = TileSet.of(TileRegion.parse(rebuildBounds, maxZoom).expand(bufferTiles));
+      }
+      if (rebuildTiles.isEmpty()) {
+        LOGGER.warn("Nothing to rebuild, copying {} to {}", basePath, output);
+        Files.copy(Path.of(basePath), output, StandardCopyOption.REPLACE_EXISTING);
+        return;
+      }
+      LOGGER.info(
+        "Rebuilding {} tiles at z{} in {} rectangles",
+        rebuildTiles.size(),
+        maxZoom,
+        rebuildTiles.rectangles().size()
       );
+      // keep the index up to date for the next update
+      writeExtentIndex |= Files.exists(baseIndex);
 
-    var config = new Configuration(language);
-    planetiler.setProfile(new Builder(config)).setOutput("data/sourdough.pmtiles").run();
+      // limit the build to the rebuilt tiles with a polygon, so clusters of changes far
+      // apart don't rebuild everything in between
+      var poly = output.resolveSibling(output.getFileName() + ".rebuild.poly");
+      rebuildTiles.writePoly(poly);
+      args = Arguments.of(
+        "bounds",
+        rebuildTiles.extent().bounds(),
+        "polygon",
+        poly.toString()
+      ).orElse(args);
+    }
+    // partial rebuilds are written next to the output, then spliced into the base archive
+    Path built = rebuildTiles == null
+      ? output
+      : output.resolveSibling(output.getFileName() + ".rebuilt.pmtiles");
+
+    if (rebuildTiles != null) {
+      Files.deleteIfExists(built);
+    }
+
+    boolean slimExtract = args.getBoolean(
+      "slim_extract",
+      "read a cached copy of the extract with only the elements the layers use (needs osmium)",
+      false
+    );
+    Path osmSource = slimExtract
+      ? SlimExtract.prepare(
+        extract,
+        layerFilters(layers, layerDefinitions),
+        layerRelationTypes(layers, layerDefinitions)
+      )
+      : extract;
+
+    var planetiler = Planetiler.create(args).addOsmSource(
+      "osm",
+      osmSource,
+      // a slim copy is made locally, so it can't be downloaded
+      osmSource.equals(extract) ? "geofabrik:" + area : null
+    );
+
+    String waterCachePath = args.getString(
+      "water_polygon_cache",
+      "file to cache ocean polygons in, for reading just the ones within the bounds next time",
+      "data/sources/water-polygons.cache"
+    );
+    WaterPolygonCache waterCache = null;
+    WaterPolygonCache.Writer waterCacheWriter = null;
+    // ocean polygons are only used by the water layer, so skip reading them otherwise
+    if (layers.contains(Water.LAYER_NAME)) {
+      var waterPolygons = Path.of("data", "sources", "water-polygons-split-3857.zip");
+      // a rebuild's bounds are just the edited area, but the low-zoom tiles it replaces
+      // cover much more, so it reads every ocean polygon (and doesn't cache them, in case
+      // they're limited to the bounds)
+      if (!waterCachePath.isEmpty() && rebuildTiles == null) {
+        waterCache = WaterPolygonCache.open(Path.of(waterCachePath), waterPolygons);
+      }
+      boolean cached = waterCache != null;
+      // the cached polygons are processed on one thread, which is slower than reading the
+      // shapefile on every core once a build needs more than a few of them (and the bounds
+      // aren't known yet if the extract still has to be downloaded)
+      if (waterCache != null) {
+        var bounds = Files.exists(osmSource) ? planetiler.config().bounds().latLon() : null;
+        int needed = bounds == null ? Integer.MAX_VALUE : waterCache.count(bounds);
+        if (needed > MAX_CACHED_OCEAN_POLYGONS) {
+          LOGGER.info("Bounds need too many ocean polygons for the cache, reading the shapefile");
+          waterCache.close();
+          waterCache = null;
+        }
+      }
+      if (waterCache == null) {
+        planetiler.addShapefileSource(
+          "osm_water",
+          waterPolygons,
+          "https://osmdata.openstreetmap.de/download/water-polygons-split-3857.zip"
+        );
+        if (!cached && !waterCachePath.isEmpty() && rebuildTiles == null) {
+          waterCacheWriter = new WaterPolygonCache.Writer(Path.of(waterCachePath));
+        }
+      }
+    }
+
+    Map<String, List<String>> layerGroups = parseLayerGroups(
+      args.getList(
+        "layer_groups",
+        "also split the output by layer group (e.g. 'basemap:water+places,pois:amenities+shops')",
+        List.of()
+      ),
+      layers,
+      output
+    );
+    String layerStatsPath = args.getString(
+      "layer_stats",
+      "write per-layer processing stats to this JSON file (e.g. 'data/layer-stats.json')",
+      ""
+    );
+    var layerStats = layerStatsPath.isEmpty() ? null : new LayerStats();
+    String recordPath = args.getString(
+      "record_postprocess",
+      "save the largest postProcess inputs for each layer and zoom to this directory",
+      ""
+    );
+    var recorder = recordPath.isEmpty() ? null : new PostProcessRecorder();
+    String calibrationOutput = args.getString(
+      "calibration_output",
+      "write min zoom calibration statistics to this JSON file",
+      ""
+    );
+    int calibrationTarget = args.getInteger(
+      "calibration_target",
+      "features of each class per tile to calibrate min zooms for",
+      64
+    );
+    String calibrationInput = args.getString(
+      "calibration_input",
+      "adjust point min zooms using a file written by --calibration_output",
+      ""
+    );
+    var calibrationStats = calibrationOutput.isEmpty() ? null : new CalibrationStats();
+    var minZoomOffsets = calibrationInput.isEmpty()
+      ? null
+      : MinZoomOffsets.read(Path.of(calibrationInput));
+
+    int[] tileBudgetLimits = TileBudget.parseLimits(
+      args.getList(
+        "tile_budget",
+        "maximum tile size in bytes, for all zooms or per zoom (e.g. '500000' or '13:400000')",
+        List.of()
+      )
+    );
+
+    boolean dedupeLabels = args.getBoolean(
+      "dedupe_labels",
+      "drop repeated attributes from labels that several layers emit for the same element",
+      false
+    );
+
+    boolean routeBundles = args.getBoolean(
+      "route_bundles",
+      "emit one line per way and route type in the routes layer, instead of one per route",
+      false
+    );
+
+    var config = new Configuration(
+      language,
+      languages,
+      languagesMinZoom,
+      layerGroups,
+      routeBundles,
+      layerDefinitions
+    );
+    var builder = new Builder(config, layers, layerStats);
+    var changeTracker = change == null ? null : new ChangeTracker(change, rebuildTiles);
+    var extentIndex = writeExtentIndex
+      ? new ExtentIndex.Writer(ExtentIndex.pathFor(output))
+      : null;
+    var tileBudget = new TileBudget(
+      tileBudgetLimits,
+      builder::primaryTags,
+      builder::layerMinZoom
+    );
+    var duplicateLabels = dedupeLabels
+      ? new DuplicateLabels(
+        builder::primaryTags,
+        layerGroups.values().stream().<Set<String>>map(Set::copyOf).toList()
+      )
+      : null;
+    planetiler
+      .setProfile(
+        builder
+          .recordPostProcessInputs(recorder)
+          .slimDuplicateLabels(duplicateLabels)
+          .enforceTileBudget(tileBudget.isEnabled() ? tileBudget : null)
+          .collectCalibrationStats(calibrationStats)
+          .applyMinZoomOffsets(minZoomOffsets)
+          .trackChanges(changeTracker)
+          .writeExtentIndex(extentIndex)
+          .writeWaterPolygonCache(waterCacheWriter)
+          .readWaterPolygonCache(waterCache, () -> planetiler.config().bounds().latLon())
+      )
+      .setOutput(built.toString())
+      .run();
+
+    if (waterCacheWriter != null) {
+      if (waterCacheWriter.finish()) {
+        LOGGER.info("Cached ocean polygons in {}", waterCachePath);
+      } else {
+        LOGGER.warn("No ocean polygons were read, so none were cached");
+      }
+      waterCacheWriter.close();
+    }
+    if (waterCache != null) {
+      waterCache.close();
+    }
+    if (extentIndex != null) {
+      extentIndex.finish();
+      extentIndex.close();
+    }
+    if (rebuildTiles != null) {
+      ArchiveSplicer.splice(Path.of(basePath), built, rebuildTiles, output);
+      Files.delete(built);
+      if (changeTracker != null) {
+        changeTracker.report();
+      }
+    }
+
+    if (layerStats != null) {
+      layerStats.report(Path.of(layerStatsPath));
+    }
+    if (recorder != null) {
+      recorder.write(Path.of(recordPath));
+    }
+    if (duplicateLabels != null) {
+      duplicateLabels.report();
+    }
+    if (tileBudget.isEnabled()) {
+      tileBudget.report();
+    }
+    if (layers.contains(Water.LAYER_NAME)) {
+      builder.oceanFill.report();
+    }
+    if (calibrationStats != null) {
+      calibrationStats.write(Path.of(calibrationOutput), calibrationTarget);
+    }
+
+    if (!config.layerGroups().isEmpty()) {
+      LayerGroupSplitter.split(output, config.layerGroups(), output.toAbsolutePath().getParent());
+    }
+
+    var parseCache = ParseCache.stats();
+    LOGGER.info(
+      "Attribute parse cache: {} hits, {} misses ({}% hit rate)",
+      parseCache.hits(),
+      parseCache.misses(),
+      Math.round(parseCache.hitRate() * 1000) / 10.0
+    );
   }
 }
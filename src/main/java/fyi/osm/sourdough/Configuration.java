@@ -1,12 +1,39 @@
 package fyi.osm.sourdough;
 
-public record Configuration(String language) {
+import fyi.osm.sourdough.definitions.LayerSpec;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @param language         preferred language for the {@code name} attribute,
+ *                         or null to use the {@code name} tag as-is
+ * @param languages        languages to emit as extra {@code name:xx}
+ *                         attributes alongside {@code name}
+ * @param languagesMinZoom lowest zoom that the extra {@code name:xx}
+ *                         attributes are included at
+ * @param layerGroups      extra archives to split the output into, as a map
+ *                         from archive name to the layers it contains
+ * @param routeBundles     emit one line per way and route type in the
+ *                         {@code routes} layer (listing all of its routes)
+ *                         instead of one line per route
+ * @param layerDefinitions layers defined in a JSON file, which replace the
+ *                         built-in layers of the same name (or are added as
+ *                         new layers)
+ */
+public record Configuration(
+  String language,
+  List<String> languages,
+  int languagesMinZoom,
+  Map<String, List<String>> layerGroups,
+  boolean routeBundles,
+  List<LayerSpec> layerDefinitions
+) {
   
   public static Configuration defaults() {
-    return new Configuration(null);
+    return new Configuration(null, List.of(), 0, Map.of(), false, List.of());
   }
   
   public boolean hasLanguage() {
     return language != null;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+package fyi.osm.sourdough.definitions;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.FeatureMerge;
+import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
+import com.onthegomap.planetiler.ForwardingProfile.LayerPostProcessor;
+import com.onthegomap.planetiler.VectorTile;
+import com.onthegomap.planetiler.expression.Expression;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import fyi.osm.sourdough.Configuration;
+import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
+import fyi.osm.sourdough.util.AttributeProcessor;
+import fyi.osm.sourdough.util.Utils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A layer built from a {@link LayerSpec}. Everything in the spec is compiled
+ * up front (into the same kind of filter expression, attribute plans and
+ * lookup tables the hand-written layers use), so processing a feature doesn't
+ * consult the spec at all.
+ */
+public class DefinedLayer implements FeatureProcessor, LayerPostProcessor {
+
+  private static final int DEFAULT_LABEL_MIN_ZOOM = 14;
+  private static final int DEFAULT_AREA_MIN_ZOOM = 2;
+  private static final int DEFAULT_LINE_MIN_ZOOM = 12;
+
+  private final String name;
+  private final Expression filter;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
+  private final ZoomTable labelMinZoom;
+
+  // excluded values for each excluded key (parallel arrays)
+  private final String[] excludeKeys;
+  private final Set<?>[] excludeValues;
+
+  private final boolean areas;
+  private final int areaMinZoom;
+  private final double areaMinPixelSize;
+  private final double areaDetailPixelSize;
+  private final boolean areaLabelAlways;
+  private final boolean areaLabelNamed;
+  private final boolean areaMerge;
+
+  private final boolean lines;
+  private final int lineMinZoom;
+  private final double lineMinPixelSize;
+  private final int lineBufferPixels;
+  private final int lineDetailMinZoom;
+  private final boolean lineMerge;
+
+  private final boolean points;
+  private final int pointBufferPixels;
+
+  public DefinedLayer(LayerSpec spec, Configuration config) {
+    if (spec.name() == null || spec.primaryTags() == null || spec.primaryTags().isEmpty()) {
+      throw new IllegalArgumentException("Layer definitions need a name and primary_tags");
+    }
+    this.name = spec.name();
+
+    this.filter = compileFilter(spec);
+    this.primaryAttrs = AttributeProcessor.compile(Set.copyOf(spec.primaryTags()), config);
+    this.detailAttrs = AttributeProcessor.compile(
+      Utils.union(
+        Constants.COMMON_DETAIL_TAGS,
+        spec.detailTags() == null ? Set.of() : Set.copyOf(spec.detailTags())
+      ),
+      config
+    );
+    this.labelMinZoom = ZoomTable.compile(name, spec.labelMinZoom(), DEFAULT_LABEL_MIN_ZOOM);
+
+    var exclude = spec.exclude() == null ? Map.<String, List<String>>of() : spec.exclude();
+    this.excludeKeys = exclude.keySet().toArray(String[]::new);
+    this.excludeValues = new Set<?>[excludeKeys.length];
+    for (int i = 0; i < excludeKeys.length; i++) {
+      excludeValues[i] = Set.copyOf(exclude.get(excludeKeys[i]));
+    }
+
+    var area = spec.area();
+    this.areas = area != null;
+    this.areaMinZoom = area == null || area.minZoom() == null
+      ? DEFAULT_AREA_MIN_ZOOM
+      : area.minZoom();
+    this.areaMinPixelSize = area == null || area.minPixelSize() == null ? 4.0 : area.minPixelSize();
+    this.areaDetailPixelSize = area == null || area.detailPixelSize() == null
+      ? 32.0
+      : area.detailPixelSize();
+    var label = area == null || area.label() == null ? "named" : area.label();
+    if (!List.of("named", "always", "never").contains(label)) {
+      throw new IllegalArgumentException("Unknown area label setting '" + label + "' in " + name);
+    }
+    this.areaLabelAlways = label.equals("always");
+    this.areaLabelNamed = label.equals("named");
+    this.areaMerge = area != null && Boolean.TRUE.equals(area.merge());
+
+    var line = spec.line();
+    this.lines = line != null;
+    this.lineMinZoom = line == null || line.minZoom() == null
+      ? DEFAULT_LINE_MIN_ZOOM
+      : line.minZoom();
+    this.lineMinPixelSize = line == null || line.minPixelSize() == null ? 1.0 : line.minPixelSize();
+    this.lineBufferPixels = line == null || line.bufferPixels() == null ? 4 : line.bufferPixels();
+    this.lineDetailMinZoom = line == null || line.detailMinZoom() == null
+      ? lineMinZoom
+      : line.detailMinZoom();
+    this.lineMerge = line != null && Boolean.TRUE.equals(line.merge());
+
+    var point = spec.point();
+    this.points = point != null;
+    this.pointBufferPixels = point == null || point.bufferPixels() == null
+      ? 32
+      : point.bufferPixels();
+  }
+
+  /** Returns the lowest zoom a layer built from {@code spec} emits features at. */
+  public static int minZoom(LayerSpec spec) {
+    int minZoom = ZoomTable.compile(
+      spec.name(),
+      spec.labelMinZoom(),
+      DEFAULT_LABEL_MIN_ZOOM
+    ).min();
+    if (spec.area() != null) {
+      minZoom = Math.min(
+        minZoom,
+        spec.area().minZoom() == null ? DEFAULT_AREA_MIN_ZOOM : spec.area().minZoom()
+      );
+    }
+    if (spec.line() != null) {
+      minZoom = Math.min(
+        minZoom,
+        spec.line().minZoom() == null ? DEFAULT_LINE_MIN_ZOOM : spec.line().minZoom()
+      );
+    }
+    return minZoom;
+  }
+
+  private static Expression compileFilter(LayerSpec spec) {
+    var filter = spec.filter() == null || spec.filter().isEmpty()
+      ? Map.of(spec.primaryTags().get(0), List.<String>of())
+      : spec.filter();
+
+    var expressions = new ArrayList<Expression>();
+    for (var entry : filter.entrySet()) {
+      if (entry.getValue() == null || entry.getValue().isEmpty()) {
+        expressions.add(Expression.matchField(entry.getKey()));
+      } else {
+        expressions.add(Expression.matchAny(entry.getKey(), entry.getValue()));
+      }
+    }
+    return expressions.size() == 1 ? expressions.get(0) : Expression.or(expressions);
+  }
+
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public Expression filter() {
+    return filter;
+  }
+
+  @Override
+  public void processFeature(SourceFeature sf, FeatureCollector fc) {
+    for (int i = 0; i < excludeKeys.length; i++) {
+      var value = sf.getString(excludeKeys[i]);
+      if (value != null && excludeValues[i].contains(value)) {
+        return;
+      }
+    }
+
+    if (sf.canBePolygon()) {
+      if (areas) {
+        processArea(sf, fc);
+      }
+    } else if (sf.canBeLine()) {
+      if (lines) {
+        processLine(sf, fc);
+      }
+    } else if (sf.isPoint() && points) {
+      processPoint(sf, fc);
+    }
+  }
+
+  @Override
+  public List<VectorTile.Feature> postProcess(int zoom, List<VectorTile.Feature> items)
+    throws GeometryException {
+    // the same settings as the built-in layers that merge
+    if (areaMerge) {
+      items = FeatureMerge.mergeNearbyPolygons(items, 3.0, 3.0, 0.5, 0.5);
+    }
+    if (lineMerge) {
+      double tolerance = zoom < 15 ? 0.4 : 0.125;
+      items = FeatureMerge.mergeLineStrings(items, 0, tolerance, lineBufferPixels);
+    }
+    return items;
+  }
+
+  private void processArea(SourceFeature sf, FeatureCollector fc) {
+    var polygon = fc.polygon(name);
+    polygon.setZoomRange(areaMinZoom, 15);
+    polygon.setMinPixelSize(areaMinPixelSize);
+
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
+
+    var detailMinZoom = Math.min(
+      labelMinZoom.get(sf),
+      polygon.getMinZoomForPixelSize(areaDetailPixelSize)
+    );
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
+
+    if (areaLabelAlways || (areaLabelNamed && sf.hasTag("name"))) {
+      var label = fc.pointOnSurface(name);
+      label.setMinZoom(detailMinZoom);
+      label.setBufferPixels(32);
+
+      primary.setAttributes(label);
+      detail.setAttributes(label);
+    }
+  }
+
+  private void processLine(SourceFeature sf, FeatureCollector fc) {
+    var line = fc.line(name);
+    line.setMinZoom(lineMinZoom);
+    line.setMinPixelSize(lineMinPixelSize);
+    line.setBufferPixels(lineBufferPixels);
+
+    primaryAttrs.setAttributes(sf, line);
+    detailAttrs.setAttributesWithMinzoom(sf, line, lineDetailMinZoom);
+  }
+
+  private void processPoint(SourceFeature sf, FeatureCollector fc) {
+    var point = fc.point(name);
+    point.setMinZoom(labelMinZoom.get(sf));
+    point.setBufferPixels(pointBufferPixels);
+
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
+  }
+}
@@ -0,0 +1,105 @@
+package fyi.osm.sourdough.definitions;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A layer defined in a JSON file rather than in Java. See USAGE.md for the
+ * format; fields that are left out get the same defaults the hand-written
+ * layers mostly use.
+ *
+ * @param name         layer name
+ * @param primaryTags  tags included on every feature (the first one is also
+ *                     used to select features, unless {@code filter} is set)
+ * @param detailTags   tags included at higher zooms, in addition to the common
+ *                     detail tags (name, ref, wikidata etc.)
+ * @param filter       tags to select features by, as a map from key to allowed
+ *                     values (an empty list allows any value)
+ * @param exclude      tag values to skip, as a map from key to values
+ * @param labelMinZoom min zoom for points, and for labels of named areas
+ * @param area         how to emit polygons, or null to skip them
+ * @param line         how to emit lines, or null to skip them
+ * @param point        how to emit points, or null to skip them
+ */
+public record LayerSpec(
+  String name,
+  List<String> primaryTags,
+  List<String> detailTags,
+  Map<String, List<String>> filter,
+  Map<String, List<String>> exclude,
+  ZoomSpec labelMinZoom,
+  AreaSpec area,
+  LineSpec line,
+  PointSpec point
+) {
+  /**
+   * A min zoom looked up by the value of a tag.
+   *
+   * @param key    tag to look up
+   * @param values min zoom for each value of the tag
+   * @param other  min zoom for other values (or when the tag is missing)
+   */
+  public record ZoomSpec(String key, Map<String, Integer> values, Integer other) {}
+
+  /**
+   * @param minZoom         lowest zoom to include polygons at
+   * @param minPixelSize    smallest size (in pixels) to include polygons at
+   * @param detailPixelSize size (in pixels) a polygon must reach before its
+   *                        detail tags are included
+   * @param label           whether to add a label point: "named" (only if the
+   *                        feature has a name), "always" or "never"
+   * @param merge           whether to merge nearby polygons with the same
+   *                        attributes in each tile
+   */
+  public record AreaSpec(
+    Integer minZoom,
+    Double minPixelSize,
+    Double detailPixelSize,
+    String label,
+    Boolean merge
+  ) {}
+
+  /**
+   * @param minZoom       lowest zoom to include lines at
+   * @param minPixelSize  shortest length (in pixels) to include lines at
+   * @param bufferPixels  buffer around tiles to include lines in
+   * @param detailMinZoom lowest zoom to include detail tags at
+   * @param merge         whether to join lines with the same attributes in
+   *                      each tile
+   */
+  public record LineSpec(
+    Integer minZoom,
+    Double minPixelSize,
+    Integer bufferPixels,
+    Integer detailMinZoom,
+    Boolean merge
+  ) {}
+
+  /**
+   * @param bufferPixels buffer around tiles to include points in
+   */
+  public record PointSpec(Integer bufferPixels) {}
+
+  private static final ObjectMapper MAPPER = new ObjectMapper()
+    .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+    .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+  record Definitions(List<LayerSpec> layers) {}
+
+  /** Reads layer definitions from a JSON file with a top-level "layers" list. */
+  public static List<LayerSpec> read(Path path) throws IOException {
+    var file = MAPPER.readValue(path.toFile(), Definitions.class);
+    return file.layers() == null ? List.of() : file.layers();
+  }
+
+  /** Reads layer definitions from a JSON string (e.g. for benchmarks). */
+  public static List<LayerSpec> parse(String json) throws IOException {
+    var file = MAPPER.readValue(json, Definitions.class);
+    return file.layers() == null ? List.of() : file.layers();
+  }
+}
@@ -0,0 +1,76 @@
+package fyi.osm.sourdough.definitions;
+
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import fyi.osm.sourdough.util.StringIndex;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * A min zoom looked up by the value of one tag, compiled from a
+ * {@link LayerSpec.ZoomSpec} into a {@link StringIndex} of values and an
+ * array of zooms (so a lookup is a hash, a probe or two and an array read,
+ * like the {@code switch} on strings it replaces).
+ */
+final class ZoomTable {
+
+  private final String key;
+  private final int other;
+  private final StringIndex values;
+  private final byte[] zooms;
+
+  ZoomTable(String layer, String key, Map<String, Integer> values, int other) {
+    this.key = key;
+    this.other = checkZoom(layer, "other", other);
+    var names = new ArrayList<String>(values.size());
+    this.zooms = new byte[values.size()];
+    for (var entry : values.entrySet()) {
+      zooms[names.size()] = (byte) checkZoom(layer, entry.getKey(), entry.getValue());
+      names.add(entry.getKey());
+    }
+    this.values = new StringIndex(names);
+  }
+
+  static ZoomTable compile(String layer, LayerSpec.ZoomSpec spec, int defaultZoom) {
+    if (spec == null) {
+      return new ZoomTable(layer, null, Map.of(), defaultZoom);
+    }
+    return new ZoomTable(
+      layer,
+      spec.key(),
+      spec.values() == null ? Map.of() : spec.values(),
+      spec.other() == null ? defaultZoom : spec.other()
+    );
+  }
+
+  private static int checkZoom(String layer, String value, Integer zoom) {
+    if (zoom == null || zoom < 0 || zoom > PlanetilerConfig.MAX_MAXZOOM) {
+      throw new IllegalArgumentException(
+        "Min zoom for '" + value + "' in layer " + layer + " must be 0 to " +
+        PlanetilerConfig.MAX_MAXZOOM + ", got " + zoom
+      );
+    }
+    return zoom;
+  }
+
+  /** Returns the lowest zoom this table can return. */
+  int min() {
+    int min = other;
+    for (byte zoom : zooms) {
+      min = Math.min(min, zoom);
+    }
+    return min;
+  }
+
+  int get(SourceFeature sf) {
+    if (key == null) {
+      return other;
+    }
+    var value = sf.getString(key);
+    if (value == null) {
+      return other;
+    }
+    int slot = values.indexOf(value);
+    return slot < 0 ? other : zooms[slot];
+  }
+}
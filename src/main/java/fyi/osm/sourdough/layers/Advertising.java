@@ -6,6 +6,7 @@ import com.onthegomap.planetiler.expression.Expression;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.Set;
@@ -13,9 +14,13 @@ import java.util.Set;
 public class Advertising implements FeatureProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Advertising(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "advertising";
@@ -62,17 +67,20 @@ public class Advertising implements FeatureProcessor {
     polygon.setZoomRange(10, 15);
     polygon.setMinPixelSize(4.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(15, polygon.getMinZoomForPixelSize(32));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     var point = fc.pointOnSurface(this.name());
     point.setMinZoom(detailMinZoom);
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primary.setAttributes(point);
+    detail.setAttributes(point);
   }
 
   private void processAdvertisingLine(SourceFeature sf, FeatureCollector fc) {
@@ -81,10 +89,10 @@ public class Advertising implements FeatureProcessor {
     line.setMinPixelSize(2.0);
     line.setBufferPixels(8);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
 
     var detailMinZoom = Math.min(11 + 2, 14);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
   }
 
   private void processAdvertisingPoint(SourceFeature sf, FeatureCollector fc) {
@@ -92,8 +100,8 @@ public class Advertising implements FeatureProcessor {
     point.setMinZoom(getLabelMinZoom(sf));
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
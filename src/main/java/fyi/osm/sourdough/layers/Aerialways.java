@@ -8,6 +8,7 @@ import com.onthegomap.planetiler.expression.Expression;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.Set;
@@ -15,9 +16,13 @@ import java.util.Set;
 public class Aerialways implements FeatureProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Aerialways(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "aerialways";
@@ -67,17 +72,20 @@ public class Aerialways implements FeatureProcessor {
     polygon.setZoomRange(2, 15);
     polygon.setMinPixelSize(2.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(14, polygon.getMinZoomForPixelSize(32));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     var label = fc.pointOnSurface(this.name());
     label.setMinZoom(detailMinZoom);
     label.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+    primary.setAttributes(label);
+    detail.setAttributes(label);
   }
 
   private void processAerialwayLine(SourceFeature sf, FeatureCollector fc) {
@@ -85,8 +93,8 @@ public class Aerialways implements FeatureProcessor {
     line.setZoomRange(2, 15);
     line.setMinPixelSize(16.0);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, line, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
+    detailAttrs.setAttributes(sf, line);
   }
 
   private void processAerialwayPoint(SourceFeature sf, FeatureCollector fc) {
@@ -94,7 +102,7 @@ public class Aerialways implements FeatureProcessor {
     point.setMinZoom(14);
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 }
@@ -10,6 +10,7 @@ import com.onthegomap.planetiler.geo.GeometryException;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
@@ -18,9 +19,13 @@ import java.util.Set;
 public class Aeroways implements FeatureProcessor, LayerPostProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Aeroways(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "aeroways";
@@ -72,10 +77,13 @@ public class Aeroways implements FeatureProcessor, LayerPostProcessor {
     polygon.setMinPixelSize(2.0);
     polygon.setZoomRange(2, 15);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(14, polygon.getMinZoomForPixelSize(32));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     if (sf.hasTag("name")) {
       var labelMinZoom = Math.min(getLabelMinZoom(sf), detailMinZoom);
@@ -84,8 +92,8 @@ public class Aeroways implements FeatureProcessor, LayerPostProcessor {
       label.setMinZoom(labelMinZoom);
       label.setBufferPixels(32);
 
-      AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-      AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+      primary.setAttributes(label);
+      detail.setAttributes(label);
     }
   }
 
@@ -94,8 +102,11 @@ public class Aeroways implements FeatureProcessor, LayerPostProcessor {
     line.setMinPixelSize(16.0);
     line.setZoomRange(2, 15);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, line, DETAIL_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(line);
+    detail.setAttributes(line);
 
     if (sf.hasTag("name")) {
       var labelMinZoom = Math.min(this.getLabelMinZoom(sf), line.getMinZoomForPixelSize(32));
@@ -104,8 +115,8 @@ public class Aeroways implements FeatureProcessor, LayerPostProcessor {
       label.setMinZoom(labelMinZoom);
       label.setBufferPixels(32);
 
-      AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-      AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+      primary.setAttributes(label);
+      detail.setAttributes(label);
     }
   }
 
@@ -113,8 +124,8 @@ public class Aeroways implements FeatureProcessor, LayerPostProcessor {
     var point = fc.point(this.name());
     point.setMinZoom(this.getLabelMinZoom(sf));
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
@@ -10,6 +10,7 @@ import com.onthegomap.planetiler.geo.GeometryException;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
@@ -18,9 +19,13 @@ import java.util.Set;
 public class Amenities implements FeatureProcessor, LayerPostProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Amenities(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "amenities";
@@ -119,18 +124,21 @@ public class Amenities implements FeatureProcessor, LayerPostProcessor {
     polygon.setZoomRange(2, 15);
     polygon.setMinPixelSize(2.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = polygon.getMinZoomForPixelSize(32);
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     if (sf.hasTag("name") || sf.hasTag("ref")) {
       var label = fc.pointOnSurface(this.name());
       label.setMinZoom(Math.min(getLabelMinZoom(sf), detailMinZoom));
       label.setBufferPixels(32);
 
-      AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-      AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+      primary.setAttributes(label);
+      detail.setAttributes(label);
     }
   }
 
@@ -139,8 +147,8 @@ public class Amenities implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(getLabelMinZoom(sf));
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
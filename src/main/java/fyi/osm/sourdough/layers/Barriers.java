@@ -10,6 +10,7 @@ import com.onthegomap.planetiler.geo.GeometryException;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
@@ -18,9 +19,13 @@ import java.util.Set;
 public class Barriers implements FeatureProcessor, LayerPostProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Barriers(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "barriers";
@@ -56,8 +61,8 @@ public class Barriers implements FeatureProcessor, LayerPostProcessor {
     line.setMinPixelSize(0.5);
     line.setBufferPixels(4);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, line, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
+    detailAttrs.setAttributes(sf, line);
   }
 
   private void processBarrierPoint(SourceFeature sf, FeatureCollector fc) {
@@ -65,8 +70,8 @@ public class Barriers implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(getLabelMinZoom(sf));
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
@@ -1,5 +1,6 @@
 package fyi.osm.sourdough.layers;
 
+import com.carrotsearch.hppc.LongIntHashMap;
 import com.onthegomap.planetiler.FeatureCollector;
 import com.onthegomap.planetiler.FeatureMerge;
 import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
@@ -10,24 +11,33 @@ import com.onthegomap.planetiler.expression.Expression;
 import com.onthegomap.planetiler.geo.GeometryException;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import com.onthegomap.planetiler.reader.osm.OsmElement;
-import com.onthegomap.planetiler.reader.osm.OsmReader;
 import com.onthegomap.planetiler.reader.osm.OsmRelationInfo;
+import com.onthegomap.planetiler.reader.osm.OsmSourceFeature;
 import com.onthegomap.planetiler.util.Parse;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
+import fyi.osm.sourdough.util.RelationTypes;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
-import java.util.Map;
-import java.util.OptionalInt;
 import java.util.Set;
 
-public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRelationPreprocessor {
+public class Boundaries
+  implements FeatureProcessor, LayerPostProcessor, OsmRelationPreprocessor, RelationTypes {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
+
+  // admin boundary membership of each way, folded together from all of the
+  // boundary relations the way is part of (see packMembership)
+  private final LongIntHashMap wayMemberships = new LongIntHashMap();
 
   public Boundaries(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "boundaries";
@@ -36,6 +46,13 @@ public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRela
     return LAYER_NAME;
   }
 
+  private static final String RELATION_TYPE = "boundary";
+
+  @Override
+  public Set<String> relationTypes() {
+    return Set.of(RELATION_TYPE);
+  }
+
   public static final Set<String> PRIMARY_TAGS = Set.of("boundary", "admin_level", "maritime");
 
   public static final Set<String> DETAIL_TAGS = Utils.union(
@@ -57,11 +74,16 @@ public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRela
   @Override
   public void processFeature(SourceFeature sf, FeatureCollector fc) {
     // Handle administrative boundary lines from relations
-    List<OsmReader.RelationMember<BoundaryRecord>> recs = sf.relationInfo(BoundaryRecord.class);
-
-    if (sf.canBeLine() && !recs.isEmpty()) {
-      processAdministrativeBoundaryLine(sf, fc, recs);
-      return;
+    if (
+      sf.canBeLine() &&
+      sf instanceof OsmSourceFeature osm &&
+      osm.originalElement() instanceof OsmElement.Way way
+    ) {
+      int membership = wayMemberships.getOrDefault(way.id(), 0);
+      if (membership != 0) {
+        processAdministrativeBoundaryLine(sf, fc, membership);
+        return;
+      }
     }
 
     // Handle boundary polygons
@@ -73,19 +95,10 @@ public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRela
   private void processAdministrativeBoundaryLine(
     SourceFeature sf,
     FeatureCollector fc,
-    List<OsmReader.RelationMember<BoundaryRecord>> recs
+    int membership
   ) {
-    int minAdminLevel = recs
-      .stream()
-      .mapToInt(r -> r.relation().adminLevel())
-      .min()
-      .orElse(99);
-
-    if (minAdminLevel > 8) {
-      return;
-    }
-
-    boolean disputed = recs.stream().anyMatch(r -> r.relation().disputed());
+    int minAdminLevel = membership & ADMIN_LEVEL_MASK;
+    boolean disputed = (membership & DISPUTED) != 0;
 
     var line = fc.line(this.name());
     line.setMinPixelSize(0);
@@ -113,18 +126,21 @@ public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRela
       polygon.setZoomRange(2, 15);
       polygon.setMinPixelSize(2.0);
 
-      AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+      var primary = primaryAttrs.extract(sf);
+      var detail = detailAttrs.extract(sf);
+
+      primary.setAttributes(polygon);
 
       var detailMinZoom = polygon.getMinZoomForPixelSize(32);
-      AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+      detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
       if (sf.hasTag("name")) {
         var label = fc.pointOnSurface(this.name());
         label.setMinZoom(detailMinZoom);
         label.setBufferPixels(32);
 
-        AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-        AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+        primary.setAttributes(label);
+        detail.setAttributes(label);
       }
     }
   }
@@ -138,10 +154,27 @@ public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRela
     };
   }
 
+  // a way's membership is packed into an int: the lowest admin level of its
+  // relations in the low bits, and a flag for whether any of them is disputed
+  // (0 means the way isn't part of any admin boundary relation)
+  private static final int ADMIN_LEVEL_MASK = 0xF;
+  private static final int DISPUTED = 0x10;
+
+  private static int packMembership(int existing, int adminLevel, boolean disputed) {
+    int existingLevel = existing & ADMIN_LEVEL_MASK;
+    int level = existingLevel == 0 ? adminLevel : Math.min(existingLevel, adminLevel);
+    return level | (existing & DISPUTED) | (disputed ? DISPUTED : 0);
+  }
+
+  /**
+   * Folds admin boundary relations into {@link #wayMemberships} as they are
+   * read, instead of having Planetiler store a record per relation and hand
+   * each member way the full list of its relations.
+   */
   @Override
   public List<OsmRelationInfo> preprocessOsmRelation(OsmElement.Relation relation) {
     if (
-      relation.hasTag("type", "boundary") &&
+      relation.hasTag("type", RELATION_TYPE) &&
       relation.hasTag("boundary", "administrative", "disputed", "claim")
     ) {
       Integer adminLevel = Parse.parseIntOrNull(relation.getString("admin_level"));
@@ -151,15 +184,16 @@ public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRela
         relation.hasTag("disputed_by") ||
         relation.hasTag("claimed_by");
 
-      if (adminLevel == null || adminLevel > 8) return null;
-      return List.of(
-        new BoundaryRecord(
-          relation.id(),
-          relation.getString("boundary"),
-          (int) adminLevel,
-          disputed
-        )
-      );
+      if (adminLevel == null || adminLevel < 1 || adminLevel > 8) return null;
+
+      synchronized (wayMemberships) {
+        for (var member : relation.members()) {
+          if (member.type() == OsmElement.Type.WAY) {
+            int existing = wayMemberships.getOrDefault(member.ref(), 0);
+            wayMemberships.put(member.ref(), packMembership(existing, adminLevel, disputed));
+          }
+        }
+      }
     }
     return null;
   }
@@ -171,7 +205,4 @@ public class Boundaries implements FeatureProcessor, LayerPostProcessor, OsmRela
     items = FeatureMerge.mergeOverlappingPolygons(items, 2.0);
     return items;
   }
-
-  private record BoundaryRecord(long id, String kind, int adminLevel, boolean disputed) implements
-    OsmRelationInfo {}
 }
@@ -11,6 +11,7 @@ import com.onthegomap.planetiler.reader.SourceFeature;
 import com.onthegomap.planetiler.util.Parse;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
@@ -19,9 +20,13 @@ import java.util.Set;
 public class Buildings implements FeatureProcessor, LayerPostProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Buildings(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "buildings";
@@ -94,10 +99,10 @@ public class Buildings implements FeatureProcessor, LayerPostProcessor {
     polygon.setZoomRange(11, 15);
     polygon.setMinPixelSize(1.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, polygon);
 
     var detailMinZoom = Math.min(14, polygon.getMinZoomForPixelSize(16));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, polygon, detailMinZoom);
   }
 
   private void processBuildingPoint(SourceFeature sf, FeatureCollector fc) {
@@ -105,8 +110,8 @@ public class Buildings implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(14);
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private void processBuildingPartArea(SourceFeature sf, FeatureCollector fc) {
@@ -114,10 +119,10 @@ public class Buildings implements FeatureProcessor, LayerPostProcessor {
     polygon.setZoomRange(13, 15);
     polygon.setMinPixelSize(0.5);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, polygon);
 
     var detailMinZoom = Math.min(14, polygon.getMinZoomForPixelSize(8));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, polygon, detailMinZoom);
   }
 
   private void processEntrancePoint(SourceFeature sf, FeatureCollector fc) {
@@ -125,8 +130,8 @@ public class Buildings implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(15);
     point.setBufferPixels(16);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   /*
@@ -135,8 +140,8 @@ public class Buildings implements FeatureProcessor, LayerPostProcessor {
     polygon.setMinZoom(15);
     polygon.setMinPixelSize(0.25);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, polygon, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, polygon);
+    detailAttrs.setAttributes(sf, polygon);
   }
 
   private void processIndoorLine(SourceFeature sf, FeatureCollector fc) {
@@ -144,8 +149,8 @@ public class Buildings implements FeatureProcessor, LayerPostProcessor {
     line.setMinZoom(15);
     line.setMinPixelSize(0.25);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, line, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
+    detailAttrs.setAttributes(sf, line);
   }
 
   private void processIndoorPoint(SourceFeature sf, FeatureCollector fc) {
@@ -153,8 +158,8 @@ public class Buildings implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(15);
     point.setBufferPixels(8);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
   */
 
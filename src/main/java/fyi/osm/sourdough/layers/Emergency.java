@@ -7,6 +7,7 @@ import com.onthegomap.planetiler.expression.Expression;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.Set;
@@ -14,9 +15,13 @@ import java.util.Set;
 public class Emergency implements FeatureProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Emergency(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "emergency";
@@ -69,17 +74,20 @@ public class Emergency implements FeatureProcessor {
     polygon.setZoomRange(2, 15);
     polygon.setMinPixelSize(2.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(getLabelMinZoom(sf), polygon.getMinZoomForPixelSize(32));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     var point = fc.pointOnSurface(this.name());
     point.setMinZoom(detailMinZoom);
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primary.setAttributes(point);
+    detail.setAttributes(point);
   }
 
   private void processEmergencyLine(SourceFeature sf, FeatureCollector fc) {
@@ -87,10 +95,10 @@ public class Emergency implements FeatureProcessor {
     line.setZoomRange(2, 15);
     line.setMinPixelSize(1.0);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
 
     var detailMinZoom = line.getMinZoomForPixelSize(32);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
   }
 
   private void processEmergencyPoint(SourceFeature sf, FeatureCollector fc) {
@@ -98,8 +106,8 @@ public class Emergency implements FeatureProcessor {
     point.setMinZoom(getLabelMinZoom(sf));
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
@@ -13,15 +13,24 @@ import com.onthegomap.planetiler.reader.SourceFeature;
 import com.onthegomap.planetiler.reader.osm.OsmElement;
 import com.onthegomap.planetiler.reader.osm.OsmRelationInfo;
 import fyi.osm.sourdough.Configuration;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import java.util.*;
 
 public class Highways implements FeatureProcessor, LayerPostProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan labelAttrs;
+  private final AttributePlan layerAttrs;
+  private final AttributePlan detailAttrs;
 
   public Highways(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.labelAttrs = AttributeProcessor.compile(LABEL_TAGS, config);
+    this.layerAttrs = AttributeProcessor.compile(LAYER_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "highways";
@@ -104,13 +113,13 @@ public class Highways implements FeatureProcessor, LayerPostProcessor {
     line.setPixelTolerance(0);
     line.setMinZoom(minZoom);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
 
     var labelMinZoom = Math.min(minZoom + 3, 14);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, LABEL_TAGS, labelMinZoom, config);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, labelMinZoom, config);
+    labelAttrs.setAttributesWithMinzoom(sf, line, labelMinZoom);
+    detailAttrs.setAttributesWithMinzoom(sf, line, labelMinZoom);
 
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, LAYER_TAGS, 12, config);
+    layerAttrs.setAttributesWithMinzoom(sf, line, 12);
 
     // Special processing for surface tag (distill down to paved/unpaved)
     var surfaceCategory = surfaceCategory(sf);
@@ -123,10 +132,10 @@ public class Highways implements FeatureProcessor, LayerPostProcessor {
     var polygon = fc.polygon(this.name());
     polygon.setMinPixelSize(32);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, polygon, LABEL_TAGS, config);
-    AttributeProcessor.setAttributes(sf, polygon, LAYER_TAGS, config);
-    AttributeProcessor.setAttributes(sf, polygon, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, polygon);
+    labelAttrs.setAttributes(sf, polygon);
+    layerAttrs.setAttributes(sf, polygon);
+    detailAttrs.setAttributes(sf, polygon);
 
     // Special processing for surface tag (see above)
     var surfaceCategory = surfaceCategory(sf);
@@ -139,10 +148,10 @@ public class Highways implements FeatureProcessor, LayerPostProcessor {
     var point = fc.point(this.name());
     point.setMinZoom(getLabelMinZoom(sf));
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, LABEL_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, LAYER_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    labelAttrs.setAttributes(sf, point);
+    layerAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
 
     var surfaceCategory = surfaceCategory(sf);
     if (surfaceCategory != null) {
@@ -154,10 +163,10 @@ public class Highways implements FeatureProcessor, LayerPostProcessor {
     var point = fc.point(this.name());
     point.setMinZoom(14);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, LABEL_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, LAYER_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    labelAttrs.setAttributes(sf, point);
+    layerAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
 
     var surfaceCategory = surfaceCategory(sf);
     if (surfaceCategory != null) {
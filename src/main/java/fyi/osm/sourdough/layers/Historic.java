@@ -7,6 +7,7 @@ import com.onthegomap.planetiler.expression.Expression;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.Set;
@@ -14,9 +15,13 @@ import java.util.Set;
 public class Historic implements FeatureProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Historic(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "historic";
@@ -75,18 +80,21 @@ public class Historic implements FeatureProcessor {
     polygon.setZoomRange(2, 15);
     polygon.setMinPixelSize(4.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(getLabelMinZoom(sf), polygon.getMinZoomForPixelSize(32));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     if (sf.hasTag("name")) {
       var label = fc.pointOnSurface(this.name());
       label.setMinZoom(detailMinZoom);
       label.setBufferPixels(32);
 
-      AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-      AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+      primary.setAttributes(label);
+      detail.setAttributes(label);
     }
   }
 
@@ -96,8 +104,8 @@ public class Historic implements FeatureProcessor {
     line.setMinPixelSize(1.0);
     line.setBufferPixels(4);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, line, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
+    detailAttrs.setAttributes(sf, line);
   }
 
   private void processHistoricPoint(SourceFeature sf, FeatureCollector fc) {
@@ -105,8 +113,8 @@ public class Historic implements FeatureProcessor {
     point.setMinZoom(getLabelMinZoom(sf));
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
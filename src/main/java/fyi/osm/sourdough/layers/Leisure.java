@@ -10,6 +10,7 @@ import com.onthegomap.planetiler.geo.GeometryException;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
@@ -18,9 +19,13 @@ import java.util.Set;
 public class Leisure implements FeatureProcessor, LayerPostProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public Leisure(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "leisure";
@@ -98,18 +103,21 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     polygon.setZoomRange(2, 15);
     polygon.setMinPixelSize(2.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = polygon.getMinZoomForPixelSize(32);
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     if (sf.hasTag("name") || sf.hasTag("ref")) {
       var label = fc.pointOnSurface(this.name());
       label.setMinZoom(Math.min(getLabelMinZoom(sf), detailMinZoom));
       label.setBufferPixels(32);
 
-      AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-      AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+      primary.setAttributes(label);
+      detail.setAttributes(label);
     }
   }
 
@@ -118,10 +126,10 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     line.setZoomRange(2, 15);
     line.setMinPixelSize(16.0);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
 
     var detailMinZoom = line.getMinZoomForPixelSize(32);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
   }
 
   private void processLeisurePoint(SourceFeature sf, FeatureCollector fc) {
@@ -129,8 +137,8 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(getLabelMinZoom(sf));
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private void processPlaygroundArea(SourceFeature sf, FeatureCollector fc) {
@@ -138,18 +146,21 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     polygon.setZoomRange(13, 15);
     polygon.setMinPixelSize(1.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(14, polygon.getMinZoomForPixelSize(16));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     if (sf.hasTag("name") || sf.hasTag("ref")) {
       var label = fc.pointOnSurface(this.name());
       label.setMinZoom(Math.min(15, detailMinZoom));
       label.setBufferPixels(32);
 
-      AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-      AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+      primary.setAttributes(label);
+      detail.setAttributes(label);
     }
   }
 
@@ -158,10 +169,10 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     line.setZoomRange(14, 15);
     line.setMinPixelSize(8.0);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
 
     var detailMinZoom = line.getMinZoomForPixelSize(16);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
   }
 
   private void processPlaygroundPoint(SourceFeature sf, FeatureCollector fc) {
@@ -169,8 +180,8 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(15);
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private void processGolfArea(SourceFeature sf, FeatureCollector fc) {
@@ -178,18 +189,21 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     polygon.setZoomRange(13, 15);
     polygon.setMinPixelSize(1.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(14, polygon.getMinZoomForPixelSize(16));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     if (sf.hasTag("name") || sf.hasTag("ref")) {
       var label = fc.pointOnSurface(this.name());
       label.setMinZoom(Math.min(15, detailMinZoom));
       label.setBufferPixels(32);
 
-      AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-      AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+      primary.setAttributes(label);
+      detail.setAttributes(label);
     }
   }
 
@@ -198,10 +212,10 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     line.setZoomRange(14, 15);
     line.setMinPixelSize(8.0);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
 
     var detailMinZoom = line.getMinZoomForPixelSize(16);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
   }
 
   private void processGolfPoint(SourceFeature sf, FeatureCollector fc) {
@@ -209,8 +223,8 @@ public class Leisure implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(15);
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
@@ -11,6 +11,7 @@ import com.onthegomap.planetiler.reader.SourceFeature;
 import com.onthegomap.planetiler.util.Parse;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
@@ -19,9 +20,13 @@ import java.util.Set;
 public class ManMade implements FeatureProcessor, LayerPostProcessor {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
 
   public ManMade(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
   }
 
   public static final String LAYER_NAME = "man_made";
@@ -73,17 +78,20 @@ public class ManMade implements FeatureProcessor, LayerPostProcessor {
     polygon.setZoomRange(2, 15);
     polygon.setMinPixelSize(2.0);
 
-    AttributeProcessor.setAttributes(sf, polygon, PRIMARY_TAGS, config);
+    var primary = primaryAttrs.extract(sf);
+    var detail = detailAttrs.extract(sf);
+
+    primary.setAttributes(polygon);
 
     var detailMinZoom = Math.min(getLabelMinZoom(sf), polygon.getMinZoomForPixelSize(32));
-    AttributeProcessor.setAttributesWithMinzoom(sf, polygon, DETAIL_TAGS, detailMinZoom, config);
+    detail.setAttributesWithMinzoom(polygon, detailMinZoom);
 
     var label = fc.pointOnSurface(this.name());
     label.setMinZoom(detailMinZoom);
     label.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, label, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, label, DETAIL_TAGS, config);
+    primary.setAttributes(label);
+    detail.setAttributes(label);
   }
 
   private void processManmadeLine(SourceFeature sf, FeatureCollector fc) {
@@ -93,10 +101,10 @@ public class ManMade implements FeatureProcessor, LayerPostProcessor {
     line.setZoomRange(minZoom, 15);
     line.setMinPixelSize(1.0);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
+    primaryAttrs.setAttributes(sf, line);
 
     var detailMinZoom = Math.min(minZoom + 3, line.getMinZoomForPixelSize(32));
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom, config);
+    detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
   }
 
   private void processManmadePoint(SourceFeature sf, FeatureCollector fc) {
@@ -104,8 +112,8 @@ public class ManMade implements FeatureProcessor, LayerPostProcessor {
     point.setMinZoom(getLabelMinZoom(sf));
     point.setBufferPixels(32);
 
-    AttributeProcessor.setAttributes(sf, point, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributes(sf, point, DETAIL_TAGS, config);
+    primaryAttrs.setAttributes(sf, point);
+    detailAttrs.setAttributes(sf, point);
   }
 
   private int getLineMinZoom(SourceFeature sf) {
@@ -14,17 +14,38 @@ import com.onthegomap.planetiler.reader.osm.OsmReader;
 import com.onthegomap.planetiler.reader.osm.OsmRelationInfo;
 import fyi.osm.sourdough.Configuration;
 import fyi.osm.sourdough.Constants;
+import fyi.osm.sourdough.util.AttributePlan;
 import fyi.osm.sourdough.util.AttributeProcessor;
+import fyi.osm.sourdough.util.RelationTagStore;
+import fyi.osm.sourdough.util.RelationTypes;
 import fyi.osm.sourdough.util.Utils;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
-public class Routes implements FeatureProcessor, LayerPostProcessor, OsmRelationPreprocessor {
+public class Routes
+  implements FeatureProcessor, LayerPostProcessor, OsmRelationPreprocessor, RelationTypes {
 
   private final Configuration config;
+  private final AttributePlan primaryAttrs;
+  private final AttributePlan detailAttrs;
+  private final AttributePlan relationAttrs;
+  private final RelationTagStore relationTags;
+  private final int routeColumn;
+  private final int refColumn;
 
   public Routes(Configuration config) {
     this.config = config;
+    this.primaryAttrs = AttributeProcessor.compile(PRIMARY_TAGS, config);
+    this.detailAttrs = AttributeProcessor.compile(DETAIL_TAGS, config);
+
+    // route relations' tags go through a plan too, so their names are localized
+    this.relationAttrs = AttributeProcessor.compile(Utils.union(PRIMARY_TAGS, DETAIL_TAGS), config);
+    this.relationTags = new RelationTagStore(relationAttrs);
+    this.routeColumn = relationAttrs.keys().indexOf("route");
+    this.refColumn = relationAttrs.keys().indexOf("ref");
   }
 
   public static final String LAYER_NAME = "routes";
@@ -33,9 +54,15 @@ public class Routes implements FeatureProcessor, LayerPostProcessor, OsmRelation
     return LAYER_NAME;
   }
 
+  private static final String RELATION_TYPE = "route";
+
+  @Override
+  public Set<String> relationTypes() {
+    return Set.of(RELATION_TYPE);
+  }
+
   public static final Set<String> PRIMARY_TAGS = Set.of("route");
 
-  // FIXME: most of these are unused, since RouteRecord does not store them
   public static final Set<String> DETAIL_TAGS = Utils.union(
     Constants.COMMON_DETAIL_TAGS,
     Set.of(
@@ -57,19 +84,12 @@ public class Routes implements FeatureProcessor, LayerPostProcessor, OsmRelation
     )
   );
 
-  private record RouteRecord(
-    long id,
-    String route,
-    String network,
-    String ref,
-    String name,
-    String operator
-    // TODO: add other DETAIL_TAGS fields from relations
-  ) implements OsmRelationInfo {}
+  // the relation's tags are kept in relationTags, so this only needs its id
+  private record RouteRecord(long id) implements OsmRelationInfo {}
 
   @Override
   public List<OsmRelationInfo> preprocessOsmRelation(OsmElement.Relation relation) {
-    if (!relation.hasTag("type", "route") || !relation.hasTag("route")) {
+    if (!relation.hasTag("type", RELATION_TYPE) || !relation.hasTag("route")) {
       return null;
     }
 
@@ -82,16 +102,8 @@ public class Routes implements FeatureProcessor, LayerPostProcessor, OsmRelation
       return null;
     }
 
-    return List.of(
-      new RouteRecord(
-        relation.id(),
-        relation.getString("route"),
-        relation.getString("network"),
-        relation.getString("ref"),
-        relation.getString("name"),
-        relation.getString("operator")
-      )
-    );
+    relationTags.add(relation);
+    return List.of(new RouteRecord(relation.id()));
   }
 
   @Override
@@ -99,7 +111,11 @@ public class Routes implements FeatureProcessor, LayerPostProcessor, OsmRelation
     // Handle route relations that have been preprocessed and applied to ways
     List<OsmReader.RelationMember<RouteRecord>> routes = sf.relationInfo(RouteRecord.class);
     if (sf.canBeLine() && !routes.isEmpty()) {
-      processRouteFromRelation(sf, fc, routes);
+      if (config.routeBundles()) {
+        processRouteBundles(fc, routes);
+      } else {
+        processRouteFromRelation(sf, fc, routes);
+      }
       return;
     }
 
@@ -118,32 +134,97 @@ public class Routes implements FeatureProcessor, LayerPostProcessor, OsmRelation
     // Process each route relation that this way is part of
     for (var routeMember : routes) {
       var route = routeMember.relation();
-      var minZoom = getRouteMinZoom(route.route);
+      int row = relationTags.row(route.id());
+      if (row < 0) {
+        continue;
+      }
+
+      var routeType = relationTags.get(row, routeColumn);
+      var minZoom = getRouteMinZoom(routeType);
       var detailMinZoom = Math.min(minZoom + 2, 14);
 
       var line = fc.line(this.name());
-      line.setId(route.id * 10 + 3);
+      line.setId(route.id() * 10 + 3);
       line.setMinZoom(minZoom);
       line.setMinPixelSize(0);
       line.setBufferPixels(8);
 
-      line.setAttr("route", route.route);
-      // line.setAttr("name", route.name);
-      // line.setAttr("ref", route.ref);
-      // line.setAttr("network", route.network);
-      // line.setAttr("operator", route.operator);
+      line.setAttr("route", routeType);
 
-      line.setAttrWithMinzoom("name", route.name, detailMinZoom);
-      line.setAttrWithMinzoom("ref", route.ref, detailMinZoom);
-      line.setAttrWithMinzoom("network", route.network, detailMinZoom);
-      line.setAttrWithMinzoom("operator", route.operator, detailMinZoom);
+      var keys = relationTags.keys();
+      for (int column = 0; column < keys.size(); column++) {
+        var value = relationTags.get(row, column);
+        if (column != routeColumn && value != null) {
+          var parsed = AttributeProcessor.parse(value, relationAttrs.type(column));
+          var attrMinZoom = Math.max(detailMinZoom, relationAttrs.minZoom(column));
+          line.setAttrWithMinzoom(keys.get(column), parsed, attrMinZoom);
+        }
+      }
 
       // Add detail attributes from the way itself at higher zoom levels
       // var detailMinZoom = Math.min(minZoom + 3, 15);
-      // AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom);
+      // detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
+    }
+  }
+
+  /**
+   * Emits one line per route type for a way, listing all the routes of that
+   * type which use it (rather than one line per route). Neighbouring ways used
+   * by the same set of routes then have identical attributes, so they are
+   * merged in postProcess.
+   */
+  private void processRouteBundles(
+    FeatureCollector fc,
+    List<OsmReader.RelationMember<RouteRecord>> routes
+  ) {
+    // ids and refs of the way's routes, grouped by route type
+    var bundles = new TreeMap<String, RouteBundle>();
+    for (var routeMember : routes) {
+      var id = routeMember.relation().id();
+      int row = relationTags.row(id);
+      if (row < 0) {
+        continue;
+      }
+      var routeType = relationTags.get(row, routeColumn);
+      var bundle = bundles.computeIfAbsent(routeType, k -> new RouteBundle());
+      bundle.ids().add(id);
+      var ref = relationTags.get(row, refColumn);
+      if (ref != null) {
+        bundle.refs().add(ref);
+      }
+    }
+
+    for (var bundle : bundles.entrySet()) {
+      var minZoom = getRouteMinZoom(bundle.getKey());
+      var detailMinZoom = Math.min(minZoom + 2, 14);
+
+      var line = fc.line(this.name());
+      line.setMinZoom(minZoom);
+      line.setMinPixelSize(0);
+      line.setBufferPixels(8);
+
+      line.setAttr("route", bundle.getKey());
+
+      // sorted, so that ways used by the same routes get identical values
+      var ids = bundle.getValue().ids();
+      var refs = bundle.getValue().refs();
+      line.setAttrWithMinzoom("route_ids", join(ids), detailMinZoom);
+      if (!refs.isEmpty()) {
+        line.setAttrWithMinzoom("refs", join(refs), detailMinZoom);
+      }
     }
   }
 
+  private record RouteBundle(Set<Long> ids, Set<String> refs) {
+    RouteBundle() {
+      this(new TreeSet<>(), new TreeSet<>());
+    }
+  }
+
+  private static String join(Set<?> values) {
+    return values.stream().map(String::valueOf).collect(Collectors.joining(";"));
+  }
+
   private void processRouteWay(SourceFeature sf, FeatureCollector fc) {
     var minZoom = getLabelMinZoom(sf);
     var detailMinZoom = Math.min(minZoom + 2, 14);
@@ -153,8 +234,8 @@ public class Routes implements FeatureProcessor, LayerPostProcessor, OsmRelation
     line.setMinPixelSize(0);
     line.setBufferPixels(8);
 
-    AttributeProcessor.setAttributes(sf, line, PRIMARY_TAGS, config);
-    AttributeProcessor.setAttributesWithMinzoom(sf, line, DETAIL_TAGS, detailMinZoom, config);
+    primaryAttrs.setAttributes(sf, line);
+    detailAttrs.setAttributesWithMinzoom(sf, line, detailMinZoom);
   }
 
   private int getLabelMinZoom(SourceFeature sf) {
@@ -0,0 +1,73 @@
+package fyi.osm.sourdough.serve;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A least-recently-used cache bounded by the total weight (e.g. size in bytes)
+ * of its values. Values are loaded outside the lock, so a slow load doesn't
+ * hold up other requests; two requests for the same missing key may both load
+ * it. Uses a {@link ReentrantLock} rather than {@code synchronized}, which
+ * would pin virtual threads to their carrier.
+ */
+final class LruCache<K, V> {
+
+  private final long maxWeight;
+  private final ToLongFunction<V> weigher;
+  private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(1024, 0.75f, true);
+  private final ReentrantLock lock = new ReentrantLock();
+  private long weight = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  LruCache(long maxWeight, ToLongFunction<V> weigher) {
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  V get(K key, Function<K, V> loader) {
+    lock.lock();
+    try {
+      var value = entries.get(key);
+      if (value != null) {
+        hits.incrementAndGet();
+        return value;
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    misses.incrementAndGet();
+    var value = loader.apply(key);
+    long valueWeight = weigher.applyAsLong(value);
+    if (valueWeight > maxWeight) {
+      return value;
+    }
+
+    lock.lock();
+    try {
+      var previous = entries.put(key, value);
+      weight += valueWeight - (previous == null ? 0 : weigher.applyAsLong(previous));
+      var eldest = entries.entrySet().iterator();
+      while (weight > maxWeight && eldest.hasNext()) {
+        weight -= weigher.applyAsLong(eldest.next().getValue());
+        eldest.remove();
+      }
+    } finally {
+      lock.unlock();
+    }
+    return value;
+  }
+
+  long hits() {
+    return hits.get();
+  }
+
+  long misses() {
+    return misses.get();
+  }
+}
@@ -0,0 +1,283 @@
+package fyi.osm.sourdough.serve;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onthegomap.planetiler.config.Arguments;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.geo.TileCoord;
+import com.onthegomap.planetiler.pmtiles.Pmtiles;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fyi.osm.sourdough.tiles.Archives;
+import fyi.osm.sourdough.tiles.MvtLayers;
+import fyi.osm.sourdough.tiles.PmtilesReader;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves tiles from a PMTiles archive over HTTP, at {@code /{z}/{x}/{y}.mvt}
+ * (or {@code .pbf}), with the archive's metadata at {@code /metadata.json}.
+ * Adding {@code ?layers=water,highways} returns only those layers, sliced out
+ * of the stored tile without decoding any features. Names that aren't in the
+ * archive's {@code vector_layers} are ignored.
+ *
+ * <p>The archive is memory-mapped, and recently used tiles and leaf
+ * directories are kept in an LRU cache. Tiles are sent as stored (gzipped)
+ * to clients that accept gzip, and tagged with an ETag derived from where
+ * they're stored in the archive, so revalidating an unchanged tile costs a
+ * directory lookup and no tile data. Each request runs on its own virtual
+ * thread.
+ */
+public final class TileServer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TileServer.class);
+
+  private static final Pattern TILE_PATH = Pattern.compile(
+    "^/(\\d{1,2})/(\\d{1,9})/(\\d{1,9})\\.(mvt|pbf)$"
+  );
+  private static final String MVT_TYPE = "application/vnd.mapbox-vector-tile";
+
+  private final CachingReader reader;
+  private final LruCache<TileKey, byte[]> tiles;
+  private final byte[] metadata;
+  // identifies this version of the archive, so ETags change when it's rebuilt
+  private final String archiveTag;
+  // the archive's layers, sorted, or empty if its metadata doesn't list them
+  private final List<String> layerNames;
+
+  // a stored tile, or a variant of it with only some layers ("" for all layers)
+  private record TileKey(long offset, String layers) {}
+
+  /** A reader that keeps recently used leaf directories in an LRU cache. */
+  private static final class CachingReader extends PmtilesReader {
+
+    private final LruCache<Long, List<Pmtiles.Entry>> directories;
+
+    CachingReader(Path path, long cacheBytes) throws IOException {
+      super(path);
+      // each entry is an object with a tile ID, offset, length and run length
+      this.directories = new LruCache<>(cacheBytes, dir -> dir.size() * 48L);
+    }
+
+    @Override
+    protected List<Pmtiles.Entry> leafDirectory(long offset, int length) {
+      return directories.get(offset, key -> super.leafDirectory(offset, length));
+    }
+  }
+
+  public TileServer(Path archive, long cacheBytes) throws IOException {
+    // tiles are much larger than directory entries, so give them most of the cache
+    this.reader = new CachingReader(archive, cacheBytes / 4);
+    // count some overhead per entry, so empty variants still take up room
+    this.tiles = new LruCache<>(cacheBytes - cacheBytes / 4, tile -> tile.length + 64L);
+    this.metadata = reader.metadata();
+    this.layerNames = layerNames(metadata);
+    if (layerNames.isEmpty()) {
+      LOGGER.warn("{} doesn't list its vector_layers, so ?layers= will be ignored", archive);
+    }
+    this.archiveTag = Integer.toHexString(
+      Objects.hash(Files.size(archive), Files.getLastModifiedTime(archive))
+    );
+  }
+
+  private static List<String> layerNames(byte[] metadata) throws IOException {
+    var names = new ArrayList<String>();
+    for (var layer : new ObjectMapper().readTree(metadata).path("vector_layers")) {
+      names.add(layer.path("id").asText());
+    }
+    return names.stream().sorted().distinct().toList();
+  }
+
+  public static void run(Arguments args) throws IOException {
+    Path archive = Path.of(
+      args.getString("archive", "archive to serve", "data/sourdough.pmtiles")
+    );
+    int port = args.getInteger("port", "port to listen on", 8080);
+    int cacheMb = args.getInteger("cache_mb", "memory for cached tiles and directories (MB)", 256);
+
+    var tileServer = new TileServer(archive, cacheMb * (1L << 20));
+    var server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/", tileServer::handle);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(tileServer::logStats));
+    LOGGER.info("Serving {} at http://localhost:{}/{z}/{x}/{y}.mvt", archive, port);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      var method = exchange.getRequestMethod();
+      if (!method.equals("GET") && !method.equals("HEAD")) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+
+      var path = exchange.getRequestURI().getPath();
+      if (path.equals("/metadata.json")) {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(exchange, metadata);
+        return;
+      }
+
+      var matcher = TILE_PATH.matcher(path);
+      if (!matcher.matches()) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      int z = Integer.parseInt(matcher.group(1));
+      long x = Long.parseLong(matcher.group(2));
+      long y = Long.parseLong(matcher.group(3));
+      if (z > PlanetilerConfig.MAX_MAXZOOM || x >= 1L << z || y >= 1L << z) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      var layers = layers(exchange);
+      if (layers == null) {
+        // none of the requested layers are in the archive
+        exchange.sendResponseHeaders(204, -1);
+        return;
+      }
+      serveTile(exchange, TileCoord.ofXYZ((int) x, (int) y, z).hilbertEncoded(), layers);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Returns the archive's layers requested with {@code ?layers=}, sorted and
+   * joined so that the same set of layers always shares a cache entry, "" for
+   * all of them, or null if none of the requested layers are in the archive.
+   */
+  private String layers(HttpExchange exchange) {
+    var query = exchange.getRequestURI().getQuery();
+    if (query == null || layerNames.isEmpty()) {
+      return "";
+    }
+    for (var param : query.split("&")) {
+      if (param.startsWith("layers=")) {
+        var requested = Arrays.stream(param.substring("layers=".length()).split(","))
+          .filter(name -> !name.isEmpty())
+          .collect(Collectors.toSet());
+        if (requested.isEmpty()) {
+          return "";
+        }
+        // unknown names would otherwise each fill the cache with a copy of the same tile
+        var known = layerNames.stream().filter(requested::contains).toList();
+        if (known.isEmpty()) {
+          return null;
+        }
+        return known.size() == layerNames.size() ? "" : String.join(",", known);
+      }
+    }
+    return "";
+  }
+
+  /**
+   * Returns a tag for a set of layers from {@link #layers}, for the ETag: the
+   * layers as a bit set over the archive's layers, which is short and exact.
+   */
+  private String layersTag(String layers) {
+    if (layers.isEmpty()) {
+      return "";
+    }
+    var bits = new BitSet(layerNames.size());
+    for (var name : layers.split(",")) {
+      bits.set(layerNames.indexOf(name));
+    }
+    return "-l" + HexFormat.of().formatHex(bits.toByteArray());
+  }
+
+  private void serveTile(HttpExchange exchange, long tileId, String layers) throws IOException {
+    var location = reader.findEntry(tileId);
+    if (location == null) {
+      // no tile means nothing to draw there
+      exchange.sendResponseHeaders(204, -1);
+      return;
+    }
+
+    var compression = reader.header().tileCompression();
+    boolean gzip = compression == Pmtiles.Compression.GZIP && acceptsGzip(exchange);
+    var etag = "\"%s-%x%s%s\"".formatted(
+      archiveTag,
+      location.offset(),
+      layersTag(layers),
+      gzip ? "-gz" : ""
+    );
+    var headers = exchange.getResponseHeaders();
+    headers.set("ETag", etag);
+    headers.set("Vary", "Accept-Encoding");
+    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      exchange.sendResponseHeaders(304, -1);
+      return;
+    }
+
+    var stored = tiles.get(new TileKey(location.offset(), layers), key -> load(location, layers));
+    if (stored.length == 0) {
+      exchange.sendResponseHeaders(204, -1);
+      return;
+    }
+    headers.set("Content-Type", MVT_TYPE);
+    if (gzip) {
+      headers.set("Content-Encoding", "gzip");
+      send(exchange, stored);
+    } else {
+      send(exchange, Archives.decompress(stored, compression));
+    }
+  }
+
+  /**
+   * Reads a tile as stored, or (if only some layers were requested) slices
+   * those layers out and compresses the result the same way as the archive.
+   */
+  private byte[] load(PmtilesReader.TileLocation location, String layers) {
+    if (layers.isEmpty()) {
+      return reader.readTileData(location);
+    }
+    var full = tiles.get(new TileKey(location.offset(), ""), key -> reader.readTileData(location));
+    var compression = reader.header().tileCompression();
+    var sliced = MvtLayers.slice(
+      Archives.decompress(full, compression),
+      Set.of(layers.split(","))
+    );
+    return sliced.length == 0 ? sliced : Archives.compress(sliced, compression);
+  }
+
+  private static boolean acceptsGzip(HttpExchange exchange) {
+    var accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    return accept != null && accept.contains("gzip");
+  }
+
+  private static void send(HttpExchange exchange, byte[] body) throws IOException {
+    if (exchange.getRequestMethod().equals("HEAD")) {
+      exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+      exchange.sendResponseHeaders(200, -1);
+      return;
+    }
+    exchange.sendResponseHeaders(200, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  private void logStats() {
+    LOGGER.info(
+      "Tile cache: {} hits, {} misses; directory cache: {} hits, {} misses",
+      tiles.hits(),
+      tiles.misses(),
+      reader.directories.hits(),
+      reader.directories.misses()
+    );
+  }
+}
@@ -0,0 +1,144 @@
+package fyi.osm.sourdough.tiles;
+
+import com.onthegomap.planetiler.archive.WriteableTileArchive;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splices a partial rebuild into an existing archive: tiles in a
+ * {@link TileSet} come from the rebuilt archive (or are dropped, if the
+ * rebuild left them empty), and every other tile is copied from the base
+ * archive as it is stored, without being decompressed.
+ */
+public class ArchiveSplicer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveSplicer.class);
+
+  private ArchiveSplicer() {}
+
+  // a run of tiles from the rebuilt archive, waiting to be written in tile ID order
+  private record Piece(long tileId, int runLength, long offset, int length) {}
+
+  /**
+   * Writes {@code output}, containing the tiles of {@code patch} in
+   * {@code tiles} and the tiles of {@code base} outside it. The metadata and
+   * header fields (bounds, center etc.) come from the base archive.
+   */
+  public static void splice(Path base, Path patch, TileSet tiles, Path output)
+    throws IOException {
+    try (
+      var baseReader = new PmtilesReader(base);
+      var patchReader = new PmtilesReader(patch);
+      var archive = Archives.create(output)
+    ) {
+      if (baseReader.header().tileCompression() != patchReader.header().tileCompression()) {
+        throw new IllegalArgumentException(
+          "Can't splice " + patch + " into " + base + ": they use different tile compression"
+        );
+      }
+
+      // the rebuilt archive only has the rebuilt tiles, so its entries fit in memory
+      var pieces = new ArrayList<Piece>();
+      patchReader.forEachEntry(entry ->
+        forEachSegment(tiles, entry.tileId(), entry.runLength(), true, (start, count) ->
+          pieces.add(new Piece(start, count, entry.offset(), entry.length()))
+        )
+      );
+
+      long[] kept = { 0 };
+      int[] next = { 0 };
+      try (var writer = archive.newTileWriter()) {
+        baseReader.forEachEntry(entry -> {
+          byte[][] data = { null };
+          forEachSegment(tiles, entry.tileId(), entry.runLength(), false, (start, count) -> {
+            next[0] = writePieces(patchReader, writer, pieces, next[0], start);
+            kept[0] += count;
+            if (data[0] == null) {
+              data[0] = baseReader.readTileData(PmtilesReader.location(entry));
+            }
+            writeRun(writer, start, count, data[0], entry.runLength() > 1);
+          });
+        });
+        writePieces(patchReader, writer, pieces, next[0], Long.MAX_VALUE);
+      }
+
+      archive.finish(Archives.metadata(base));
+      LOGGER.info(
+        "Spliced {} rebuilt tiles from {} into {}, keeping {} tiles from {}",
+        pieces.stream().mapToLong(Piece::runLength).sum(),
+        patch,
+        output,
+        kept[0],
+        base
+      );
+    }
+  }
+
+  private static int writePieces(
+    PmtilesReader reader,
+    WriteableTileArchive.TileWriter writer,
+    ArrayList<Piece> pieces,
+    int next,
+    long before
+  ) {
+    while (next < pieces.size() && pieces.get(next).tileId() < before) {
+      var piece = pieces.get(next++);
+      var data = reader.readTileData(
+        new PmtilesReader.TileLocation(piece.offset(), piece.length())
+      );
+      writeRun(writer, piece.tileId(), piece.runLength(), data, piece.runLength() > 1);
+    }
+    return next;
+  }
+
+  /**
+   * Writes {@code runLength} consecutive tiles starting at {@code tileId}, all
+   * with the contents {@code data}, which the archive stores once if they're
+   * {@code repeated}.
+   */
+  private static void writeRun(
+    WriteableTileArchive.TileWriter writer,
+    long tileId,
+    int runLength,
+    byte[] data,
+    boolean repeated
+  ) {
+    for (long id = tileId; id < tileId + runLength; id++) {
+      writer.write(Archives.tile(id, data, repeated));
+    }
+  }
+
+  private interface SegmentConsumer {
+    void accept(long tileId, int runLength) throws IOException;
+  }
+
+  /**
+   * Splits the run of {@code runLength} tiles starting at {@code tileId} into
+   * consecutive segments that are all inside (or all outside) {@code tiles},
+   * and calls {@code consumer} with the ones on the {@code inside} side.
+   */
+  private static void forEachSegment(
+    TileSet tiles,
+    long tileId,
+    int runLength,
+    boolean inside,
+    SegmentConsumer consumer
+  ) throws IOException {
+    long start = -1;
+    for (long id = tileId; id < tileId + runLength; id++) {
+      boolean wanted = tiles.contains(id) == inside;
+      if (wanted && start < 0) {
+        start = id;
+      } else if (!wanted && start >= 0) {
+        consumer.accept(start, (int) (id - start));
+        start = -1;
+      }
+    }
+    if (start >= 0) {
+      consumer.accept(start, (int) (tileId + runLength - start));
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package fyi.osm.sourdough.tiles;
+
+import com.onthegomap.planetiler.archive.TileArchiveMetadata;
+import com.onthegomap.planetiler.archive.TileEncodingResult;
+import com.onthegomap.planetiler.geo.TileCoord;
+import com.onthegomap.planetiler.pmtiles.Pmtiles;
+import com.onthegomap.planetiler.pmtiles.ReadablePmtiles;
+import com.onthegomap.planetiler.pmtiles.WriteablePmtiles;
+import com.onthegomap.planetiler.util.Gzip;
+import com.onthegomap.planetiler.util.Hashing;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.OptionalLong;
+
+/**
+ * Helpers for rewriting PMTiles archives after Planetiler has built them,
+ * using Planetiler's own PMTiles classes for the format.
+ */
+public final class Archives {
+
+  // only hash tiles up to this size for deduplication, like Planetiler does
+  private static final int MAX_DEDUPLICATED_LENGTH = 1024;
+
+  private Archives() {}
+
+  /** Returns the metadata of an archive, to copy into archives made from it. */
+  public static TileArchiveMetadata metadata(Path archive) throws IOException {
+    try (var reader = ReadablePmtiles.newReadFromFile(archive)) {
+      return reader.metadata();
+    }
+  }
+
+  /** Creates an empty archive at {@code path}, replacing any existing file. */
+  public static WriteablePmtiles create(Path path) throws IOException {
+    Files.deleteIfExists(path);
+    var archive = WriteablePmtiles.newWriteToFile(path);
+    archive.initialize();
+    return archive;
+  }
+
+  /**
+   * Returns a tile to write to an archive, with a hash of its contents if it's
+   * known to be {@code repeated} (like the tiles of a run) or is small enough
+   * to be one of many identical tiles (like empty ocean or land tiles), so
+   * that the archive stores it once and runs of it share a directory entry.
+   */
+  public static TileEncodingResult tile(long tileId, byte[] data, boolean repeated) {
+    return new TileEncodingResult(
+      TileCoord.hilbertDecode((int) tileId),
+      data,
+      repeated || data.length <= MAX_DEDUPLICATED_LENGTH
+        ? OptionalLong.of(Hashing.fnv1a64(data))
+        : OptionalLong.empty()
+    );
+  }
+
+  public static byte[] decompress(byte[] bytes, Pmtiles.Compression compression) {
+    try {
+      return switch (compression) {
+        case NONE -> bytes;
+        case GZIP -> Gzip.gunzip(bytes);
+        default -> throw new IllegalArgumentException("Unsupported compression " + compression);
+      };
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static byte[] compress(byte[] bytes, Pmtiles.Compression compression) {
+    try {
+      return switch (compression) {
+        case NONE -> bytes;
+        case GZIP -> Gzip.gzip(bytes);
+        default -> throw new IllegalArgumentException("Unsupported compression " + compression);
+      };
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
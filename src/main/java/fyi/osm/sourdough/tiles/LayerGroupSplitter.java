@@ -0,0 +1,128 @@
+package fyi.osm.sourdough.tiles;
+
+import com.onthegomap.planetiler.archive.TileArchiveMetadata;
+import com.onthegomap.planetiler.archive.WriteableTileArchive;
+import com.onthegomap.planetiler.pmtiles.Pmtiles;
+import com.onthegomap.planetiler.pmtiles.WriteablePmtiles;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits a finished archive into several smaller archives, each containing a
+ * group of layers (e.g. a "basemap" archive and a "pois" archive). Layers are
+ * copied between tiles at the protobuf level, without decoding features, so
+ * this is much cheaper than building each group from the OSM data again.
+ */
+public class LayerGroupSplitter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LayerGroupSplitter.class);
+
+  // number of tiles to recompress in parallel before writing them out in order
+  private static final int BATCH_SIZE = 4096;
+
+  private LayerGroupSplitter() {}
+
+  /**
+   * Writes one archive per group to {@code outputDir}, named after the group
+   * (e.g. {@code basemap.pmtiles}).
+   */
+  public static void split(Path input, Map<String, List<String>> groups, Path outputDir)
+    throws IOException {
+    var names = new ArrayList<>(groups.keySet());
+    var layerSets = names.stream().map(name -> Set.copyOf(groups.get(name))).toList();
+    var archives = new ArrayList<WriteablePmtiles>();
+    var writers = new ArrayList<WriteableTileArchive.TileWriter>();
+
+    try (var reader = new PmtilesReader(input)) {
+      for (var name : names) {
+        var archive = Archives.create(outputDir.resolve(name + ".pmtiles"));
+        archives.add(archive);
+        writers.add(archive.newTileWriter());
+      }
+
+      var batch = new ArrayList<Pmtiles.Entry>(BATCH_SIZE);
+      reader.forEachEntry(entry -> {
+        batch.add(entry);
+        if (batch.size() == BATCH_SIZE) {
+          writeBatch(reader, batch, layerSets, writers);
+          batch.clear();
+        }
+      });
+      writeBatch(reader, batch, layerSets, writers);
+      for (var writer : writers) {
+        writer.close();
+      }
+
+      var metadata = Archives.metadata(input);
+      for (int i = 0; i < names.size(); i++) {
+        archives.get(i).finish(filterMetadata(metadata, layerSets.get(i)));
+        LOGGER.info(
+          "Wrote {} with layers {}",
+          outputDir.resolve(names.get(i) + ".pmtiles"),
+          groups.get(names.get(i))
+        );
+      }
+    } finally {
+      for (var archive : archives) {
+        archive.close();
+      }
+    }
+  }
+
+  private static void writeBatch(
+    PmtilesReader reader,
+    List<Pmtiles.Entry> batch,
+    List<Set<String>> layerSets,
+    List<WriteableTileArchive.TileWriter> writers
+  ) {
+    var compression = reader.header().tileCompression();
+
+    // slice tiles in parallel, then write them out sequentially to keep tile ID order
+    byte[][][] sliced = new byte[batch.size()][][];
+    IntStream.range(0, batch.size()).parallel().forEach(i -> {
+      var stored = reader.readTileData(PmtilesReader.location(batch.get(i)));
+      var tile = Archives.decompress(stored, compression);
+      sliced[i] = new byte[layerSets.size()][];
+      for (int g = 0; g < layerSets.size(); g++) {
+        var slice = MvtLayers.slice(tile, layerSets.get(g));
+        sliced[i][g] = slice.length == 0 ? null : Archives.compress(slice, compression);
+      }
+    });
+
+    for (int i = 0; i < batch.size(); i++) {
+      var entry = batch.get(i);
+      for (int g = 0; g < writers.size(); g++) {
+        if (sliced[i][g] == null) {
+          continue;
+        }
+        // each tile of a run has the same contents, which the archive stores once
+        boolean run = entry.runLength() > 1;
+        for (long id = entry.tileId(); id < entry.tileId() + entry.runLength(); id++) {
+          writers.get(g).write(Archives.tile(id, sliced[i][g], run));
+        }
+      }
+    }
+  }
+
+  /** Removes layers that aren't in the group from the archive's vector_layers list. */
+  static TileArchiveMetadata filterMetadata(TileArchiveMetadata metadata, Set<String> layers) {
+    if (metadata.json() == null || metadata.json().vectorLayers() == null) {
+      return metadata;
+    }
+    return metadata.withLayerStats(
+      metadata
+        .json()
+        .vectorLayers()
+        .stream()
+        .filter(layer -> layers.contains(layer.id()))
+        .toList()
+    );
+  }
+}
@@ -0,0 +1,112 @@
+package fyi.osm.sourdough.tiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works with the layers of an encoded (uncompressed) Mapbox Vector Tile
+ * without decoding any features. A tile is a protobuf message whose only
+ * field is a repeated {@code layers} message, and each layer starts with its
+ * name, so layers can be picked out by scanning field headers and copying the
+ * matching byte ranges as-is.
+ */
+public final class MvtLayers {
+
+  private MvtLayers() {}
+
+  // Tile.layers = 3 and Layer.name = 1, both length-delimited (wire type 2)
+  private static final int TILE_LAYERS_KEY = (3 << 3) | 2;
+  private static final int LAYER_NAME_KEY = (1 << 3) | 2;
+
+  /**
+   * Returns a tile containing only the layers of {@code tile} whose names are
+   * in {@code names}, or an empty array if there are none.
+   */
+  public static byte[] slice(byte[] tile, Set<String> names) {
+    var out = new ByteArrayOutputStream(tile.length);
+    int pos = 0;
+    while (pos < tile.length) {
+      int fieldStart = pos;
+      long key = readVarint(tile, pos);
+      pos = skipVarint(tile, pos);
+
+      int end = skipValue(tile, pos, (int) key & 7);
+      if (key == TILE_LAYERS_KEY) {
+        int length = (int) readVarint(tile, pos);
+        int start = skipVarint(tile, pos);
+        var name = layerName(tile, start, start + length);
+        if (name != null && names.contains(name)) {
+          out.write(tile, fieldStart, end - fieldStart);
+        }
+      }
+      pos = end;
+    }
+    return out.toByteArray();
+  }
+
+  /** Returns the names of the layers in a tile, in order. */
+  public static List<String> names(byte[] tile) {
+    var result = new ArrayList<String>();
+    int pos = 0;
+    while (pos < tile.length) {
+      long key = readVarint(tile, pos);
+      pos = skipVarint(tile, pos);
+      int end = skipValue(tile, pos, (int) key & 7);
+      if (key == TILE_LAYERS_KEY) {
+        int length = (int) readVarint(tile, pos);
+        int start = skipVarint(tile, pos);
+        var name = layerName(tile, start, start + length);
+        if (name != null) {
+          result.add(name);
+        }
+      }
+      pos = end;
+    }
+    return result;
+  }
+
+  private static String layerName(byte[] tile, int pos, int end) {
+    while (pos < end) {
+      long key = readVarint(tile, pos);
+      pos = skipVarint(tile, pos);
+      if (key == LAYER_NAME_KEY) {
+        int length = (int) readVarint(tile, pos);
+        int start = skipVarint(tile, pos);
+        return new String(tile, start, length, StandardCharsets.UTF_8);
+      }
+      pos = skipValue(tile, pos, (int) key & 7);
+    }
+    return null;
+  }
+
+  /** Returns the position just past a field value of the given wire type. */
+  private static int skipValue(byte[] buf, int pos, int wireType) {
+    return switch (wireType) {
+      case 0 -> skipVarint(buf, pos);
+      case 1 -> pos + 8;
+      case 2 -> skipVarint(buf, pos) + (int) readVarint(buf, pos);
+      case 5 -> pos + 4;
+      default -> throw new IllegalArgumentException("Unsupported wire type " + wireType);
+    };
+  }
+
+  private static long readVarint(byte[] buf, int pos) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buf[pos++];
+      value |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private static int skipVarint(byte[] buf, int pos) {
+    while ((buf[pos++] & 0x80) != 0) {}
+    return pos;
+  }
+}
@@ -0,0 +1,174 @@
+package fyi.osm.sourdough.tiles;
+
+import com.onthegomap.planetiler.pmtiles.Pmtiles;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Finds where tiles are stored in a PMTiles archive on local disk, decoding
+ * its header and directories with Planetiler's {@link Pmtiles}. Unlike
+ * Planetiler's reader, this exposes each tile's location and directory entry,
+ * so tiles can be copied or compared without reading them, and leaf
+ * directories can be cached. The file is memory-mapped, so reads don't need
+ * any locking and can be shared between threads.
+ */
+public class PmtilesReader implements Closeable {
+
+  // map the file in chunks, since a single mapping is limited to 2 GiB
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final MappedByteBuffer[] segments;
+  private final Pmtiles.Header header;
+  private final List<Pmtiles.Entry> root;
+
+  public PmtilesReader(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    long size = channel.size();
+    int count = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    this.segments = new MappedByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      long start = i * SEGMENT_SIZE;
+      long length = Math.min(SEGMENT_SIZE, size - start);
+      segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+    }
+
+    this.header = Pmtiles.Header.fromBytes(read(0, Pmtiles.HEADER_LEN));
+    this.root = readDirectory(header.rootDirOffset(), header.rootDirLength());
+  }
+
+  public Path path() {
+    return path;
+  }
+
+  public Pmtiles.Header header() {
+    return header;
+  }
+
+  /** Returns the archive's metadata JSON, decompressed. */
+  public byte[] metadata() {
+    var bytes = read(header.jsonMetadataOffset(), (int) header.jsonMetadataLength());
+    return Archives.decompress(bytes, header.internalCompression());
+  }
+
+  /** The location of a tile's data within the tile data section. */
+  public record TileLocation(long offset, int length) {}
+
+  /** Returns where a tile's data is stored, or null if the archive doesn't contain it. */
+  public TileLocation findEntry(long tileId) {
+    var dir = root;
+    // leaf directories can't nest deeper than a few levels, but guard anyway
+    for (int depth = 0; depth < 4; depth++) {
+      var entry = find(dir, tileId);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.runLength() > 0) {
+        return location(entry);
+      }
+      dir = leafDirectory(entry.offset(), entry.length());
+    }
+    return null;
+  }
+
+  /**
+   * Returns the entry of a directory that contains {@code tileId} (either as
+   * tile data or as a leaf directory that may contain it), or null.
+   */
+  private static Pmtiles.Entry find(List<Pmtiles.Entry> dir, long tileId) {
+    int lo = 0;
+    int hi = dir.size() - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long midId = dir.get(mid).tileId();
+      if (midId < tileId) {
+        lo = mid + 1;
+      } else if (midId > tileId) {
+        hi = mid - 1;
+      } else {
+        return dir.get(mid);
+      }
+    }
+    // no exact match; the closest entry before may be a run or leaf covering it
+    if (hi >= 0) {
+      var entry = dir.get(hi);
+      if (entry.runLength() == 0 || tileId - entry.tileId() < entry.runLength()) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /** Returns where the tiles of a tile data entry are stored. */
+  public static TileLocation location(Pmtiles.Entry entry) {
+    return new TileLocation(entry.offset(), entry.length());
+  }
+
+  /** Returns the bytes stored at a location in the tile data section. */
+  public byte[] readTileData(TileLocation location) {
+    return read(header.tileDataOffset() + location.offset(), location.length());
+  }
+
+  /**
+   * Loads the leaf directory at {@code offset} within the leaf directory
+   * section. Subclasses may override this to cache directories.
+   */
+  protected List<Pmtiles.Entry> leafDirectory(long offset, int length) {
+    return readDirectory(header.leafDirectoriesOffset() + offset, length);
+  }
+
+  public interface EntryConsumer {
+    void accept(Pmtiles.Entry entry) throws IOException;
+  }
+
+  /**
+   * Calls {@code consumer} for each tile data entry in the archive, in tile ID
+   * order. Offsets are relative to the start of the tile data section.
+   */
+  public void forEachEntry(EntryConsumer consumer) throws IOException {
+    forEachEntry(root, consumer);
+  }
+
+  private void forEachEntry(List<Pmtiles.Entry> dir, EntryConsumer consumer) throws IOException {
+    for (var entry : dir) {
+      if (entry.runLength() == 0) {
+        forEachEntry(leafDirectory(entry.offset(), entry.length()), consumer);
+      } else {
+        consumer.accept(entry);
+      }
+    }
+  }
+
+  /** Copies {@code length} bytes starting at {@code offset} in the file. */
+  public byte[] read(long offset, int length) {
+    var result = new byte[length];
+    int done = 0;
+    while (done < length) {
+      long position = offset + done;
+      var segment = segments[(int) (position / SEGMENT_SIZE)];
+      int start = (int) (position % SEGMENT_SIZE);
+      int n = Math.min(length - done, segment.capacity() - start);
+      segment.get(start, result, done, n);
+      done += n;
+    }
+    return result;
+  }
+
+  private List<Pmtiles.Entry> readDirectory(long offset, long length) {
+    var bytes = read(offset, (int) length);
+    return Pmtiles.directoryFromBytes(Archives.decompress(bytes, header.internalCompression()));
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,120 @@
+package fyi.osm.sourdough.tiles;
+
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.geo.TileCoord;
+import java.util.Locale;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A rectangle of tiles at an archive's max zoom, plus their ancestors at every
+ * lower zoom: the tiles that a partial rebuild regenerates. Coordinates are
+ * inclusive.
+ */
+public record TileRegion(int maxZoom, int minX, int minY, int maxX, int maxY) {
+  // how far inside the region to pull the bounds given to Planetiler (as a
+  // fraction of a tile), so tiles that only touch its edge aren't built
+  private static final double EDGE_MARGIN = 1e-3;
+
+  /** Returns the region covering world coordinates (each from 0 to 1) at {@code maxZoom}. */
+  public static TileRegion covering(
+    double minWorldX,
+    double minWorldY,
+    double maxWorldX,
+    double maxWorldY,
+    int maxZoom
+  ) {
+    int n = 1 << maxZoom;
+    return new TileRegion(
+      maxZoom,
+      Math.clamp((long) (minWorldX * n), 0, n - 1),
+      Math.clamp((long) (minWorldY * n), 0, n - 1),
+      Math.clamp((long) (maxWorldX * n), 0, n - 1),
+      Math.clamp((long) (maxWorldY * n), 0, n - 1)
+    );
+  }
+
+  /**
+   * Returns the region covering {@code west,south,east,north} bounds (in
+   * degrees, e.g. {@code -71.2,42.2,-70.9,42.5}) at {@code maxZoom}.
+   */
+  public static TileRegion parse(String bounds, int maxZoom) {
+    var parts = bounds.split(",");
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("Expected west,south,east,north bounds, got " + bounds);
+    }
+    double west = Double.parseDouble(parts[0].strip());
+    double south = Double.parseDouble(parts[1].strip());
+    double east = Double.parseDouble(parts[2].strip());
+    double north = Double.parseDouble(parts[3].strip());
+    if (west > east || south > north) {
+      throw new IllegalArgumentException("Bounds " + bounds + " are empty");
+    }
+    return covering(
+      GeoUtils.getWorldX(west),
+      GeoUtils.getWorldY(north),
+      GeoUtils.getWorldX(east),
+      GeoUtils.getWorldY(south),
+      maxZoom
+    );
+  }
+
+  /** Returns this region grown by {@code tiles} tiles at the max zoom on each side. */
+  public TileRegion expand(int tiles) {
+    int last = (1 << maxZoom) - 1;
+    return new TileRegion(
+      maxZoom,
+      Math.max(0, minX - tiles),
+      Math.max(0, minY - tiles),
+      Math.min(last, maxX + tiles),
+      Math.min(last, maxY + tiles)
+    );
+  }
+
+  public boolean contains(int z, int x, int y) {
+    if (z > maxZoom) {
+      return false;
+    }
+    int shift = maxZoom - z;
+    return x >= minX >> shift && x <= maxX >> shift && y >= minY >> shift && y <= maxY >> shift;
+  }
+
+  public boolean contains(long tileId) {
+    var coord = TileCoord.hilbertDecode((int) tileId);
+    return contains(coord.z(), coord.x(), coord.y());
+  }
+
+  /** Returns true if every tile of {@code other} (at the same max zoom) is in this region. */
+  public boolean contains(TileRegion other) {
+    return (
+      other.minX >= minX && other.maxX <= maxX && other.minY >= minY && other.maxY <= maxY
+    );
+  }
+
+  /**
+   * Returns the region as a {@code west,south,east,north} string for
+   * Planetiler's {@code --bounds} option, so that it builds exactly these tiles.
+   */
+  public String bounds() {
+    var latLon = latLon();
+    return String.format(
+      Locale.ROOT,
+      "%.7f,%.7f,%.7f,%.7f",
+      latLon.getMinX(),
+      latLon.getMinY(),
+      latLon.getMaxX(),
+      latLon.getMaxY()
+    );
+  }
+
+  /** Returns the region's bounds in degrees, pulled in slightly so they only cover its tiles. */
+  public Envelope latLon() {
+    double n = 1 << maxZoom;
+    double margin = EDGE_MARGIN / n;
+    return new Envelope(
+      GeoUtils.getWorldLon(minX / n + margin),
+      GeoUtils.getWorldLon((maxX + 1) / n - margin),
+      GeoUtils.getWorldLat((maxY + 1) / n - margin),
+      GeoUtils.getWorldLat(minY / n + margin)
+    );
+  }
+}
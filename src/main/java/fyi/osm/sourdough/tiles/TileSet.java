@@ -0,0 +1,251 @@
+package fyi.osm.sourdough.tiles;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.onthegomap.planetiler.geo.TileCoord;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A set of tiles at an archive's max zoom, plus their ancestors at every lower
+ * zoom: the tiles that a partial rebuild regenerates. Unlike a single
+ * {@link TileRegion}, a set can cover many small clusters far apart (like the
+ * edits in a daily diff) without everything in between.
+ *
+ * <p>Tiles are tracked in cells a few zooms below the max zoom, so a set
+ * stays small however many changes it covers, at the cost of rebuilding up to
+ * a cell's worth of extra tiles around each one.
+ */
+public final class TileSet {
+
+  // how many zooms below the max zoom cells are (so each cell is 4x4 tiles)
+  private static final int CELL_ZOOM_OFFSET = 2;
+
+  private final int maxZoom;
+  private final int cellZoom;
+  // the cells in the set, and their ancestors at each lower zoom
+  private final LongHashSet[] levels;
+
+  private TileSet(int maxZoom) {
+    this.maxZoom = maxZoom;
+    this.cellZoom = Math.max(0, maxZoom - CELL_ZOOM_OFFSET);
+    this.levels = new LongHashSet[cellZoom + 1];
+    for (int z = 0; z <= cellZoom; z++) {
+      levels[z] = new LongHashSet();
+    }
+  }
+
+  /** Returns the set of tiles in {@code region}, rounded out to whole cells. */
+  public static TileSet of(TileRegion region) {
+    var set = new TileSet(region.maxZoom());
+    set.add(region);
+    set.fillAncestors();
+    return set;
+  }
+
+  /**
+   * Returns the set of tiles at {@code maxZoom} that intersect any of
+   * {@code worldEnvelopes} (in world coordinates, each from 0 to 1), grown by
+   * {@code bufferTiles} on each side.
+   */
+  public static TileSet covering(List<Envelope> worldEnvelopes, int maxZoom, int bufferTiles) {
+    var set = new TileSet(maxZoom);
+    for (var envelope : worldEnvelopes) {
+      set.add(
+        TileRegion.covering(
+          envelope.getMinX(),
+          envelope.getMinY(),
+          envelope.getMaxX(),
+          envelope.getMaxY(),
+          maxZoom
+        ).expand(bufferTiles)
+      );
+    }
+    set.fillAncestors();
+    return set;
+  }
+
+  private void add(TileRegion region) {
+    int shift = maxZoom - cellZoom;
+    var cells = levels[cellZoom];
+    for (int x = region.minX() >> shift; x <= region.maxX() >> shift; x++) {
+      for (int y = region.minY() >> shift; y <= region.maxY() >> shift; y++) {
+        cells.add(key(x, y));
+      }
+    }
+  }
+
+  private void fillAncestors() {
+    for (int z = cellZoom; z > 0; z--) {
+      for (LongCursor cursor : levels[z]) {
+        levels[z - 1].add(key(x(cursor.value) >> 1, y(cursor.value) >> 1));
+      }
+    }
+  }
+
+  public int maxZoom() {
+    return maxZoom;
+  }
+
+  public boolean isEmpty() {
+    return levels[cellZoom].isEmpty();
+  }
+
+  /** Returns the number of tiles in the set at the max zoom. */
+  public long size() {
+    return (long) levels[cellZoom].size() << (2 * (maxZoom - cellZoom));
+  }
+
+  public boolean contains(int z, int x, int y) {
+    if (z > maxZoom) {
+      return false;
+    }
+    if (z <= cellZoom) {
+      return levels[z].contains(key(x, y));
+    }
+    int shift = z - cellZoom;
+    return levels[cellZoom].contains(key(x >> shift, y >> shift));
+  }
+
+  public boolean contains(long tileId) {
+    var coord = TileCoord.hilbertDecode((int) tileId);
+    return contains(coord.z(), coord.x(), coord.y());
+  }
+
+  /** Returns true if every tile of {@code region} (at the same max zoom) is in this set. */
+  public boolean contains(TileRegion region) {
+    int shift = maxZoom - cellZoom;
+    var cells = levels[cellZoom];
+    for (int x = region.minX() >> shift; x <= region.maxX() >> shift; x++) {
+      for (int y = region.minY() >> shift; y <= region.maxY() >> shift; y++) {
+        if (!cells.contains(key(x, y))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns rectangles covering exactly the tiles in the set, found by joining
+   * the cells in each row into runs, and stacking identical runs in
+   * neighbouring rows.
+   */
+  public List<TileRegion> rectangles() {
+    var cells = levels[cellZoom].toArray();
+    // row by row, then left to right
+    Arrays.sort(cells);
+    var result = new ArrayList<TileRegion>();
+    // open rectangles, by the run of cells (first and last x) that they extend down
+    var open = new HashMap<Long, int[]>();
+    int row = -1;
+    int i = 0;
+    while (i < cells.length) {
+      int y = y(cells[i]);
+      if (y != row) {
+        closeAll(open, y, result);
+        row = y;
+      }
+      int first = x(cells[i]);
+      int last = first;
+      while (++i < cells.length && y(cells[i]) == y && x(cells[i]) == last + 1) {
+        last++;
+      }
+      var run = key(first, last);
+      var rect = open.get(run);
+      if (rect == null) {
+        // first x, first y, last x, and last y (the row it last extended down to)
+        open.put(run, new int[] { first, y, last, y });
+      } else {
+        rect[3] = y;
+      }
+    }
+    closeAll(open, Integer.MAX_VALUE, result);
+    return result;
+  }
+
+  /** Closes the open rectangles that didn't extend to the row before {@code y}. */
+  private void closeAll(Map<Long, int[]> open, int y, List<TileRegion> result) {
+    int shift = maxZoom - cellZoom;
+    var iterator = open.values().iterator();
+    while (iterator.hasNext()) {
+      var rect = iterator.next();
+      if (rect[3] < y - 1 || y == Integer.MAX_VALUE) {
+        result.add(
+          new TileRegion(
+            maxZoom,
+            rect[0] << shift,
+            rect[1] << shift,
+            ((rect[2] + 1) << shift) - 1,
+            ((rect[3] + 1) << shift) - 1
+          )
+        );
+        iterator.remove();
+      }
+    }
+  }
+
+  /** Returns the smallest single region containing every tile in the set. */
+  public TileRegion extent() {
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (var rect : rectangles()) {
+      minX = Math.min(minX, rect.minX());
+      minY = Math.min(minY, rect.minY());
+      maxX = Math.max(maxX, rect.maxX());
+      maxY = Math.max(maxY, rect.maxY());
+    }
+    return new TileRegion(maxZoom, minX, minY, maxX, maxY);
+  }
+
+  /**
+   * Writes the set as an Osmosis {@code .poly} file (one section per
+   * rectangle), for Planetiler's {@code --polygon} option, so that it builds
+   * exactly these tiles.
+   */
+  public void writePoly(Path path) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      writer.write("sourdough rebuild\n");
+      int section = 1;
+      for (var rect : rectangles()) {
+        var latLon = rect.latLon();
+        writer.write(section++ + "\n");
+        point(writer, latLon.getMinX(), latLon.getMinY());
+        point(writer, latLon.getMaxX(), latLon.getMinY());
+        point(writer, latLon.getMaxX(), latLon.getMaxY());
+        point(writer, latLon.getMinX(), latLon.getMaxY());
+        point(writer, latLon.getMinX(), latLon.getMinY());
+        writer.write("END\n");
+      }
+      writer.write("END\n");
+    }
+  }
+
+  private static void point(Writer writer, double lon, double lat) throws IOException {
+    writer.write(String.format(Locale.ROOT, "   %.7f   %.7f\n", lon, lat));
+  }
+
+  private static long key(int x, int y) {
+    return ((long) y << 32) | x;
+  }
+
+  private static int x(long key) {
+    return (int) key;
+  }
+
+  private static int y(long key) {
+    return (int) (key >>> 32);
+  }
+}
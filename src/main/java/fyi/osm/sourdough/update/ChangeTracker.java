@@ -0,0 +1,84 @@
+package fyi.osm.sourdough.update;
+
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import fyi.osm.sourdough.tiles.TileRegion;
+import fyi.osm.sourdough.tiles.TileSet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the features of an update build for ones that an {@link OsmChange}
+ * touches but that lie (at least partly) outside the tiles being rebuilt. The
+ * tiles come from {@link ChangedExtents}, so this only happens in cases it
+ * doesn't resolve (such as a relation whose member relation changed). Those
+ * tiles are left as they were in the base archive, so they're reported at the
+ * end.
+ */
+public final class ChangeTracker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChangeTracker.class);
+
+  private final OsmChange change;
+  private final TileSet tiles;
+  private final AtomicLong touched = new AtomicLong();
+  private final AtomicLong outside = new AtomicLong();
+  private final Envelope missed = new Envelope();
+
+  public ChangeTracker(OsmChange change, TileSet tiles) {
+    this.change = change;
+    this.tiles = tiles;
+  }
+
+  public void observe(SourceFeature sf) {
+    if (!change.touches(sf)) {
+      return;
+    }
+    touched.incrementAndGet();
+    try {
+      var envelope = sf.worldGeometry().getEnvelopeInternal();
+      var extent = TileRegion.covering(
+        envelope.getMinX(),
+        envelope.getMinY(),
+        envelope.getMaxX(),
+        envelope.getMaxY(),
+        tiles.maxZoom()
+      );
+      if (!tiles.contains(extent)) {
+        outside.incrementAndGet();
+        synchronized (missed) {
+          missed.expandToInclude(envelope);
+        }
+      }
+    } catch (GeometryException e) {
+      // features without a valid geometry don't appear in any tile
+    }
+  }
+
+  public void report() {
+    LOGGER.info(
+      "Update touched {} features ({} nodes, {} ways, {} relations changed)",
+      touched.get(),
+      change.nodeCount(),
+      change.wayCount(),
+      change.relationCount()
+    );
+    if (outside.get() > 0) {
+      var extent = TileRegion.covering(
+        missed.getMinX(),
+        missed.getMinY(),
+        missed.getMaxX(),
+        missed.getMaxY(),
+        tiles.maxZoom()
+      );
+      LOGGER.warn(
+        "{} changed features extend outside the rebuilt tiles, which may be out of date " +
+        "within bounds {}",
+        outside.get(),
+        extent.bounds()
+      );
+    }
+  }
+}
@@ -0,0 +1,318 @@
+package fyi.osm.sourdough.update;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.reader.osm.OsmBlockSource;
+import com.onthegomap.planetiler.reader.osm.OsmElement;
+import com.onthegomap.planetiler.reader.osm.OsmInputFile;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Works out where an {@link OsmChange} affects an archive: the extents (in
+ * world coordinates) of every changed element, before and after the change.
+ *
+ * <p>Changed nodes carry their new location in the change file. Ways and
+ * relations don't, and neither do the ways whose nodes moved or the relations
+ * with a changed member, so their new extents are resolved by reading the
+ * updated extract: ways and relations first (to find the affected ones and
+ * the nodes they need), then the member ways of affected relations, then the
+ * nodes. Old extents, including those of deleted elements, come from the
+ * base archive's {@link ExtentIndex}.
+ */
+public final class ChangedExtents {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChangedExtents.class);
+
+  private final OsmChange change;
+
+  // affected ways and relation member ways, by ID, with their nodes
+  private final LongObjectHashMap<LongArrayList> wayNodes = new LongObjectHashMap<>();
+  private final LongHashSet affectedWays = new LongHashSet();
+  // affected relations, by ID, with their member ways and nodes
+  private final LongObjectHashMap<LongArrayList> relationWays = new LongObjectHashMap<>();
+  private final LongObjectHashMap<LongArrayList> relationNodes = new LongObjectHashMap<>();
+  // member ways of affected relations that aren't affected themselves
+  private final LongHashSet memberWays = new LongHashSet();
+
+  // world coordinates of the nodes that affected ways and relations need
+  private final LongHashSet wantedNodes = new LongHashSet();
+  private final LongIntHashMap nodeSlots = new LongIntHashMap();
+  private final DoubleArrayList nodeX = new DoubleArrayList();
+  private final DoubleArrayList nodeY = new DoubleArrayList();
+
+  private ChangedExtents(OsmChange change) {
+    this.change = change;
+  }
+
+  /**
+   * Returns the extents of everything that {@code change} affects, using the
+   * updated {@code extract} and (if it exists) the index of the archive
+   * being updated.
+   */
+  public static List<Envelope> resolve(OsmChange change, Path extract, Path oldIndex)
+    throws IOException {
+    var extents = new ChangedExtents(change);
+    extents.readWaysAndRelations(extract);
+    if (!extents.memberWays.isEmpty()) {
+      extents.readMemberWays(extract);
+    }
+    extents.readNodes(extract);
+
+    var result = new ArrayList<Envelope>();
+    change.forEachNodeLocation((x, y) -> result.add(new Envelope(x, x, y, y)));
+    extents.addNew(result);
+    int resolved = result.size();
+
+    if (Files.exists(oldIndex)) {
+      ExtentIndex.read(oldIndex, extents.keys(), result::add);
+    } else {
+      LOGGER.warn(
+        "{} doesn't exist, so tiles showing deleted elements (or where changed elements used " +
+        "to be) won't be rebuilt; build with --extent_index to write it",
+        oldIndex
+      );
+    }
+    LOGGER.info(
+      "Change affects {} ways and {} relations, {} extents after the change and {} before",
+      extents.affectedWays.size(),
+      extents.relationWays.size(),
+      resolved,
+      result.size() - resolved
+    );
+    return result;
+  }
+
+  /** Finds the affected ways and relations, and the ways and nodes they're made of. */
+  private void readWaysAndRelations(Path extract) throws IOException {
+    scan(
+      extract,
+      this::isAffectedWayOrRelation,
+      element -> {
+        switch (element) {
+          case OsmElement.Way way -> {
+            affectedWays.add(way.id());
+            wayNodes.put(way.id(), way.nodes());
+            wantedNodes.addAll(way.nodes());
+          }
+          // ways come before relations in an extract, so the affected ways are all known
+          case OsmElement.Relation relation -> addRelation(relation);
+          default -> {}
+        }
+      }
+    );
+  }
+
+  /**
+   * Returns true for ways that changed or have a changed node, and for every
+   * relation (which can only be checked once all the affected ways are known).
+   */
+  private boolean isAffectedWayOrRelation(OsmElement element) {
+    return switch (element) {
+      case OsmElement.Way way -> {
+        yield change.ways().contains(way.id()) || containsAny(change.nodes(), way.nodes());
+      }
+      case OsmElement.Relation relation -> true;
+      default -> false;
+    };
+  }
+
+  private void addRelation(OsmElement.Relation relation) {
+    boolean affected = change.relations().contains(relation.id());
+    for (var member : relation.members()) {
+      affected |= switch (member.type()) {
+        case NODE -> change.nodes().contains(member.ref());
+        case WAY -> affectedWays.contains(member.ref()) || change.ways().contains(member.ref());
+        case RELATION -> change.relations().contains(member.ref());
+      };
+    }
+    if (!affected) {
+      return;
+    }
+    // a member relation has its own extent if it's affected, so only ways and nodes count here
+    var ways = new LongArrayList();
+    var nodes = new LongArrayList();
+    for (var member : relation.members()) {
+      switch (member.type()) {
+        case WAY -> {
+          ways.add(member.ref());
+          if (!wayNodes.containsKey(member.ref())) {
+            memberWays.add(member.ref());
+          }
+        }
+        case NODE -> {
+          nodes.add(member.ref());
+          wantedNodes.add(member.ref());
+        }
+        default -> {}
+      }
+    }
+    relationWays.put(relation.id(), ways);
+    relationNodes.put(relation.id(), nodes);
+  }
+
+  /** Reads the nodes of relation member ways that weren't already read. */
+  private void readMemberWays(Path extract) throws IOException {
+    scan(
+      extract,
+      element -> element instanceof OsmElement.Way way && memberWays.contains(way.id()),
+      element -> {
+        var way = (OsmElement.Way) element;
+        wayNodes.put(way.id(), way.nodes());
+        wantedNodes.addAll(way.nodes());
+      }
+    );
+  }
+
+  private void readNodes(Path extract) throws IOException {
+    scan(
+      extract,
+      element -> element instanceof OsmElement.Node node && wantedNodes.contains(node.id()),
+      element -> {
+        var node = (OsmElement.Node) element;
+        nodeSlots.put(node.id(), nodeX.size());
+        nodeX.add(GeoUtils.getWorldX(node.lon()));
+        nodeY.add(GeoUtils.getWorldY(node.lat()));
+      }
+    );
+  }
+
+  /** Adds the new extent of each affected way and relation to {@code result}. */
+  private void addNew(List<Envelope> result) {
+    for (var way : affectedWays) {
+      addIfNotEmpty(result, wayEnvelope(way.value));
+    }
+    for (var relation : relationWays) {
+      var envelope = new Envelope();
+      for (var way : relation.value) {
+        envelope.expandToInclude(wayEnvelope(way.value));
+      }
+      for (var node : relationNodes.get(relation.key)) {
+        expandToNode(envelope, node.value);
+      }
+      addIfNotEmpty(result, envelope);
+    }
+  }
+
+  private Envelope wayEnvelope(long way) {
+    var envelope = new Envelope();
+    var nodes = wayNodes.get(way);
+    if (nodes != null) {
+      for (var node : nodes) {
+        expandToNode(envelope, node.value);
+      }
+    }
+    return envelope;
+  }
+
+  private void expandToNode(Envelope envelope, long node) {
+    int slot = nodeSlots.getOrDefault(node, -1);
+    if (slot >= 0) {
+      envelope.expandToInclude(nodeX.get(slot), nodeY.get(slot));
+    }
+  }
+
+  private static void addIfNotEmpty(List<Envelope> result, Envelope envelope) {
+    if (!envelope.isNull()) {
+      result.add(envelope);
+    }
+  }
+
+  /** Returns the index keys of every changed or affected element, to look up old extents. */
+  private LongHashSet keys() {
+    var keys = new LongHashSet();
+    for (var node : change.nodes()) {
+      keys.add(ExtentIndex.nodeKey(node.value));
+    }
+    for (var way : change.ways()) {
+      keys.add(ExtentIndex.wayKey(way.value));
+    }
+    for (var way : affectedWays) {
+      keys.add(ExtentIndex.wayKey(way.value));
+    }
+    for (var relation : change.relations()) {
+      keys.add(ExtentIndex.relationKey(relation.value));
+    }
+    for (var relation : relationWays) {
+      keys.add(ExtentIndex.relationKey(relation.key));
+    }
+    return keys;
+  }
+
+  /**
+   * Reads every element of {@code extract} in order, decoding blocks on
+   * several threads. Each thread keeps only the elements that pass
+   * {@code filter}, and they're handed to {@code consumer} one at a time, in
+   * the order they're stored.
+   */
+  private static void scan(
+    Path extract,
+    Predicate<OsmElement> filter,
+    Consumer<OsmElement> consumer
+  ) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    var pending = new ArrayDeque<Future<List<OsmElement>>>();
+    try (OsmBlockSource blocks = new OsmInputFile(extract).get()) {
+      blocks.forEachBlock(block -> {
+        pending.add(
+          pool.submit(() -> {
+            var kept = new ArrayList<OsmElement>();
+            for (var element : block.decodeElements()) {
+              if (filter.test(element)) {
+                kept.add(element);
+              }
+            }
+            return kept;
+          })
+        );
+        // keep a few blocks per thread in flight, and hand over the oldest
+        while (pending.size() > threads * 4) {
+          take(pending).forEach(consumer);
+        }
+      });
+      while (!pending.isEmpty()) {
+        take(pending).forEach(consumer);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static List<OsmElement> take(ArrayDeque<Future<List<OsmElement>>> pending) {
+    try {
+      return pending.poll().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to read extract", e.getCause());
+    }
+  }
+
+  private static boolean containsAny(LongHashSet set, LongArrayList ids) {
+    for (int i = 0; i < ids.size(); i++) {
+      if (set.contains(ids.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
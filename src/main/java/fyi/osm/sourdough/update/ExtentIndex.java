@@ -0,0 +1,179 @@
+package fyi.osm.sourdough.update;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.reader.osm.OsmElement;
+import com.onthegomap.planetiler.reader.osm.OsmSourceFeature;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Where the features of each OSM element in an archive are, stored next to
+ * the archive so that a later update knows which tiles to rebuild for
+ * elements that it deletes or moves away (whose old location is in neither
+ * the change file nor the updated extract).
+ *
+ * <p>The file is a list of fixed-size entries, one per element that produced
+ * features: the element's {@link #key}, then its envelope in world
+ * coordinates (as floats, which are precise to well within a tile at z15).
+ * Entries are in no particular order, so looking elements up reads the whole
+ * file once.
+ */
+public final class ExtentIndex {
+
+  // key, then min x, min y, max x, max y
+  private static final int ENTRY_LENGTH = 8 + 4 * 4;
+
+  private ExtentIndex() {}
+
+  /** Returns where the index for {@code archive} is stored. */
+  public static Path pathFor(Path archive) {
+    return archive.resolveSibling(archive.getFileName() + ".extents");
+  }
+
+  /** Returns a key for an element that's unique across nodes, ways and relations. */
+  public static long key(OsmElement element) {
+    return switch (element) {
+      case OsmElement.Node node -> nodeKey(node.id());
+      case OsmElement.Way way -> wayKey(way.id());
+      case OsmElement.Relation relation -> relationKey(relation.id());
+      default -> (element.id() << 2) | 3;
+    };
+  }
+
+  public static long nodeKey(long id) {
+    return id << 2;
+  }
+
+  public static long wayKey(long id) {
+    return (id << 2) | 1;
+  }
+
+  public static long relationKey(long id) {
+    return (id << 2) | 2;
+  }
+
+  /**
+   * Calls {@code consumer} with the extent of each element in the index whose
+   * key is in {@code keys}.
+   */
+  public static void read(Path path, LongHashSet keys, Consumer<Envelope> consumer)
+    throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var buffer = ByteBuffer.allocate(ENTRY_LENGTH * 65536).order(ByteOrder.LITTLE_ENDIAN);
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        while (buffer.remaining() >= ENTRY_LENGTH) {
+          long key = buffer.getLong();
+          float minX = buffer.getFloat();
+          float minY = buffer.getFloat();
+          float maxX = buffer.getFloat();
+          float maxY = buffer.getFloat();
+          if (keys.contains(key)) {
+            consumer.accept(new Envelope(minX, maxX, minY, maxY));
+          }
+        }
+        buffer.compact();
+      }
+      if (buffer.position() > 0) {
+        throw new IOException(path + " is truncated");
+      }
+    }
+  }
+
+  /**
+   * Records the extent of each element that produces features as a build
+   * processes it (from any number of threads), and writes the index when the
+   * build is done.
+   */
+  public static final class Writer implements Closeable {
+
+    private final Path path;
+    private final Path tmp;
+    private final FileChannel channel;
+    // each thread fills its own buffer, so recording an element doesn't need a lock
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(this::newBuffer);
+    private final List<ByteBuffer> allBuffers = new ArrayList<>();
+
+    public Writer(Path path) throws IOException {
+      this.path = path;
+      this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+      this.channel = FileChannel.open(
+        tmp,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING
+      );
+    }
+
+    private ByteBuffer newBuffer() {
+      var buffer = ByteBuffer.allocate(ENTRY_LENGTH * 4096).order(ByteOrder.LITTLE_ENDIAN);
+      synchronized (allBuffers) {
+        allBuffers.add(buffer);
+      }
+      return buffer;
+    }
+
+    public void add(SourceFeature sf) throws IOException {
+      if (!(sf instanceof OsmSourceFeature osm)) {
+        return;
+      }
+      Envelope envelope;
+      try {
+        envelope = sf.worldGeometry().getEnvelopeInternal();
+      } catch (GeometryException e) {
+        // features without a valid geometry don't appear in any tile
+        return;
+      }
+      var buffer = buffers.get();
+      if (buffer.remaining() < ENTRY_LENGTH) {
+        flush(buffer);
+      }
+      buffer
+        .putLong(key(osm.originalElement()))
+        .putFloat((float) envelope.getMinX())
+        .putFloat((float) envelope.getMinY())
+        .putFloat((float) envelope.getMaxX())
+        .putFloat((float) envelope.getMaxY());
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+      buffer.flip();
+      synchronized (channel) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      buffer.clear();
+    }
+
+    /** Writes the index, replacing any existing one. */
+    public void finish() throws IOException {
+      synchronized (allBuffers) {
+        for (var buffer : allBuffers) {
+          flush(buffer);
+        }
+      }
+      channel.close();
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
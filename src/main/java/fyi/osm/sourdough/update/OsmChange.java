@@ -0,0 +1,152 @@
+package fyi.osm.sourdough.update;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.reader.osm.OsmElement;
+import com.onthegomap.planetiler.reader.osm.OsmSourceFeature;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * The elements created, modified or deleted by an OsmChange ({@code .osc})
+ * file, such as a daily replication diff.
+ *
+ * <p>Nodes carry their location in the file (see {@link #forEachNodeLocation}).
+ * Ways and relations don't: {@link ChangedExtents} finds where they are.
+ */
+public final class OsmChange {
+
+  private final LongHashSet nodes = new LongHashSet();
+  private final LongHashSet ways = new LongHashSet();
+  private final LongHashSet relations = new LongHashSet();
+
+  // world coordinates of the changed nodes that have a location in the file
+  private final DoubleArrayList nodeX = new DoubleArrayList();
+  private final DoubleArrayList nodeY = new DoubleArrayList();
+
+  private OsmChange() {}
+
+  /** Reads an OsmChange file, which may be gzipped (if its name ends in {@code .gz}). */
+  public static OsmChange read(Path path) throws IOException {
+    var change = new OsmChange();
+    try (InputStream in = open(path)) {
+      var reader = XMLInputFactory.newFactory().createXMLStreamReader(in);
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        switch (reader.getLocalName()) {
+          case "node" -> {
+            change.nodes.add(Long.parseLong(reader.getAttributeValue(null, "id")));
+            String lat = reader.getAttributeValue(null, "lat");
+            String lon = reader.getAttributeValue(null, "lon");
+            if (lat != null && lon != null) {
+              change.nodeX.add(GeoUtils.getWorldX(Double.parseDouble(lon)));
+              change.nodeY.add(GeoUtils.getWorldY(Double.parseDouble(lat)));
+            }
+          }
+          case "way" -> change.ways.add(Long.parseLong(reader.getAttributeValue(null, "id")));
+          case "relation" -> change.relations.add(
+            Long.parseLong(reader.getAttributeValue(null, "id"))
+          );
+          default -> {}
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Invalid OsmChange file " + path, e);
+    }
+    return change;
+  }
+
+  private static InputStream open(Path path) throws IOException {
+    InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+    return path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in) : in;
+  }
+
+  /** Receives a location in world coordinates. */
+  @FunctionalInterface
+  public interface LocationConsumer {
+    void accept(double worldX, double worldY);
+  }
+
+  /** Calls {@code consumer} with the location of every changed node that has one in the file. */
+  public void forEachNodeLocation(LocationConsumer consumer) {
+    for (int i = 0; i < nodeX.size(); i++) {
+      consumer.accept(nodeX.get(i), nodeY.get(i));
+    }
+  }
+
+  /**
+   * Returns true if {@code sf} came from a changed element, a way with a
+   * changed node, or a relation with a changed member.
+   */
+  public boolean touches(SourceFeature sf) {
+    if (!(sf instanceof OsmSourceFeature osm)) {
+      return false;
+    }
+    return switch (osm.originalElement()) {
+      case OsmElement.Node node -> nodes.contains(node.id());
+      case OsmElement.Way way -> ways.contains(way.id()) || containsAny(nodes, way.nodes());
+      case OsmElement.Relation relation -> {
+        if (relations.contains(relation.id())) {
+          yield true;
+        }
+        for (var member : relation.members()) {
+          var changed = switch (member.type()) {
+            case NODE -> nodes;
+            case WAY -> ways;
+            case RELATION -> relations;
+          };
+          if (changed.contains(member.ref())) {
+            yield true;
+          }
+        }
+        yield false;
+      }
+      default -> false;
+    };
+  }
+
+  private static boolean containsAny(LongHashSet set, LongArrayList ids) {
+    for (int i = 0; i < ids.size(); i++) {
+      if (set.contains(ids.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  LongHashSet nodes() {
+    return nodes;
+  }
+
+  LongHashSet ways() {
+    return ways;
+  }
+
+  LongHashSet relations() {
+    return relations;
+  }
+
+  public int nodeCount() {
+    return nodes.size();
+  }
+
+  public int wayCount() {
+    return ways.size();
+  }
+
+  public int relationCount() {
+    return relations.size();
+  }
+}
@@ -0,0 +1,34 @@
+package fyi.osm.sourdough.util;
+
+import com.onthegomap.planetiler.FeatureCollector;
+
+/**
+ * The attributes of one source feature, extracted and parsed by an
+ * {@link AttributePlan}. A bundle can be applied to any number of output
+ * features (for example a polygon and its label point), so the tag lookups
+ * and parsing only happen once per source feature.
+ */
+public final class AttributeBundle {
+
+  private final String[] keys;
+  private final int[] minZooms;
+  private final Object[] values;
+
+  AttributeBundle(String[] keys, int[] minZooms, Object[] values) {
+    this.keys = keys;
+    this.minZooms = minZooms;
+    this.values = values;
+  }
+
+  public void setAttributes(FeatureCollector.Feature feature) {
+    setAttributesWithMinzoom(feature, 0);
+  }
+
+  public void setAttributesWithMinzoom(FeatureCollector.Feature feature, int minZoom) {
+    for (int i = 0; i < keys.length; i++) {
+      if (values[i] != null) {
+        AttributePlan.setAttr(feature, keys[i], values[i], Math.max(minZoom, minZooms[i]));
+      }
+    }
+  }
+}
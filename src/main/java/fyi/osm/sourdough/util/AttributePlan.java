@@ -0,0 +1,232 @@
+package fyi.osm.sourdough.util;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.reader.WithTags;
+import fyi.osm.sourdough.Configuration;
+import fyi.osm.sourdough.util.AttributeProcessor.AttributeType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A set of tag keys compiled into flat arrays, so that copying attributes from
+ * a source feature to an output feature doesn't need to iterate a set or look
+ * up each key's type. Layers build their plans once (in their constructor) and
+ * reuse them for every feature.
+ */
+public final class AttributePlan {
+
+  /**
+   * How a plan finds the tags it wants on a feature.
+   */
+  public enum Mode {
+    /** Look up every key in the plan on the feature (cost grows with the plan). */
+    PROBE_KEYS,
+    /** Walk the feature's tags and look each one up in the plan (cost grows with the feature). */
+    WALK_TAGS,
+    /** Pick whichever of the above has fewer lookups to do for each feature. */
+    ADAPTIVE,
+  }
+
+  private final Mode mode;
+  private final String[] keys;
+  private final AttributeType[] types;
+  private final int[] minZooms;
+
+  // index of the "name" key in the arrays above (or -1 if not present), and
+  // the key of the localized name to try first (or null if none configured)
+  private final int nameSlot;
+  private final String localizedNameKey;
+
+  // index of each key in the arrays above, used when walking a feature's tags
+  private final StringIndex index;
+
+  AttributePlan(Set<String> keys, Configuration config, Mode mode) {
+    this.mode = mode;
+
+    // sort keys so that attribute order is stable from one build to the next,
+    // and give plans that include "name" an extra slot for each configured
+    // language (each with its own min zoom)
+    var allKeys = new ArrayList<>(keys.stream().sorted().toList());
+    var languageKeys = new ArrayList<String>();
+    if (keys.contains("name")) {
+      for (var language : config.languages()) {
+        var key = "name:" + language;
+        if (!keys.contains(key) && !languageKeys.contains(key)) {
+          languageKeys.add(key);
+        }
+      }
+    }
+    allKeys.addAll(languageKeys);
+
+    this.keys = allKeys.toArray(String[]::new);
+    this.types = new AttributeType[this.keys.length];
+    this.minZooms = new int[this.keys.length];
+
+    int nameSlot = -1;
+    for (int i = 0; i < this.keys.length; i++) {
+      this.types[i] = AttributeProcessor.getType(this.keys[i]);
+      if ("name".equals(this.keys[i])) {
+        nameSlot = i;
+      }
+      if (languageKeys.contains(this.keys[i])) {
+        this.minZooms[i] = config.languagesMinZoom();
+      }
+    }
+
+    this.nameSlot = nameSlot;
+    this.localizedNameKey = config.hasLanguage() ? "name:" + config.language() : null;
+    this.index = new StringIndex(allKeys);
+  }
+
+  /** Returns the keys of this plan's attributes, in the order they're set. */
+  public List<String> keys() {
+    return List.of(keys);
+  }
+
+  public AttributeType type(int slot) {
+    return types[slot];
+  }
+
+  /** Returns the lowest zoom the attribute in {@code slot} is set at (0 for all zooms). */
+  public int minZoom(int slot) {
+    return minZooms[slot];
+  }
+
+  /**
+   * Returns the value of the attribute in {@code slot} on an element that isn't
+   * a source feature (like a relation being preprocessed), with {@code name}
+   * localized the same way as when setting attributes.
+   */
+  public String getString(WithTags element, int slot) {
+    return slot == nameSlot ? getName(element) : element.getString(keys[slot]);
+  }
+
+  public void setAttributes(SourceFeature sf, FeatureCollector.Feature feature) {
+    resolve(sf, feature, -1, null);
+  }
+
+  public void setAttributesWithMinzoom(
+    SourceFeature sf,
+    FeatureCollector.Feature feature,
+    int minZoom
+  ) {
+    resolve(sf, feature, minZoom, null);
+  }
+
+  /**
+   * Looks up and parses this plan's attributes on a source feature once, so
+   * they can be applied to several output features.
+   */
+  public AttributeBundle extract(SourceFeature sf) {
+    var values = new Object[keys.length];
+    resolve(sf, null, -1, values);
+    return new AttributeBundle(keys, minZooms, values);
+  }
+
+  /**
+   * Finds each of this plan's tags on a source feature, and either sets it on
+   * an output feature (if one is given) or stores it in {@code values}.
+   */
+  private void resolve(
+    SourceFeature sf,
+    FeatureCollector.Feature feature,
+    int minZoom,
+    Object[] values
+  ) {
+    if (shouldWalkTags(sf)) {
+      walkTags(sf, feature, minZoom, values);
+    } else {
+      probeKeys(sf, feature, minZoom, values);
+    }
+  }
+
+  private boolean shouldWalkTags(SourceFeature sf) {
+    return switch (mode) {
+      case PROBE_KEYS -> false;
+      case WALK_TAGS -> true;
+      case ADAPTIVE -> sf.tags().size() < keys.length;
+    };
+  }
+
+  private void probeKeys(
+    SourceFeature sf,
+    FeatureCollector.Feature feature,
+    int minZoom,
+    Object[] values
+  ) {
+    for (int i = 0; i < keys.length; i++) {
+      var value = i == nameSlot ? getName(sf) : sf.getString(keys[i]);
+      if (value != null) {
+        emit(i, value, feature, minZoom, values);
+      }
+    }
+  }
+
+  private void walkTags(
+    SourceFeature sf,
+    FeatureCollector.Feature feature,
+    int minZoom,
+    Object[] values
+  ) {
+    // the localized name may be present without a plain name tag, so look it up
+    // directly rather than waiting to come across "name" in the feature's tags
+    boolean localizeName = nameSlot >= 0 && localizedNameKey != null;
+    if (localizeName) {
+      var name = getName(sf);
+      if (name != null) {
+        emit(nameSlot, name, feature, minZoom, values);
+      }
+    }
+
+    for (var tag : sf.tags().entrySet()) {
+      var value = tag.getValue();
+      if (value == null) {
+        continue;
+      }
+      int slot = index.indexOf(tag.getKey());
+      if (slot < 0 || (localizeName && slot == nameSlot)) {
+        continue;
+      }
+      emit(slot, value.toString(), feature, minZoom, values);
+    }
+  }
+
+  private void emit(
+    int slot,
+    String value,
+    FeatureCollector.Feature feature,
+    int minZoom,
+    Object[] values
+  ) {
+    var parsed = AttributeProcessor.parse(value, types[slot]);
+    if (values != null) {
+      values[slot] = parsed;
+    } else {
+      setAttr(feature, keys[slot], parsed, Math.max(minZoom, minZooms[slot]));
+    }
+  }
+
+  /**
+   * Sets an attribute on a feature, with a min zoom if {@code minZoom} is
+   * positive (a negative or zero min zoom means "all zooms").
+   */
+  static void setAttr(FeatureCollector.Feature feature, String key, Object value, int minZoom) {
+    if (minZoom <= 0) {
+      feature.setAttr(key, value);
+    } else {
+      feature.setAttrWithMinzoom(key, value, minZoom);
+    }
+  }
+
+  private String getName(WithTags element) {
+    if (localizedNameKey != null) {
+      String localizedName = element.getString(localizedNameKey);
+      if (localizedName != null) {
+        return localizedName;
+      }
+    }
+    return element.getString(keys[nameSlot]);
+  }
+}
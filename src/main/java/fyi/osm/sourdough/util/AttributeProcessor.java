@@ -1,7 +1,5 @@
 package fyi.osm.sourdough.util;
 
-import com.onthegomap.planetiler.FeatureCollector;
-import com.onthegomap.planetiler.reader.SourceFeature;
 import com.onthegomap.planetiler.util.Parse;
 import fyi.osm.sourdough.Configuration;
 import java.util.Map;
@@ -40,53 +38,28 @@ public class AttributeProcessor {
     return switch (type) {
       case STRING -> value;
       case BOOLEAN -> parseBoolOrNull(value);
-      case INTEGER -> Parse.parseIntOrNull(value);
-      case DOUBLE -> Parse.parseDoubleOrNull(value);
-      case LENGTH_METERS -> Parse.meters(value);
+      // numeric values repeat a lot, so reuse recent results rather than reparsing
+      case INTEGER -> ParseCache.get(value, type, Parse::parseIntOrNull);
+      case DOUBLE -> ParseCache.get(value, type, Parse::parseDoubleOrNull);
+      case LENGTH_METERS -> ParseCache.get(value, type, Parse::meters);
     };
   }
 
-  public static void setAttributes(
-    SourceFeature sf,
-    FeatureCollector.Feature feature,
-    Set<String> keys,
-    Configuration config
-  ) {
-    for (var key : keys) {
-      var value = getValue(sf, key, config);
-      if (value != null) {
-        var type = getType(key);
-        var parsed = parse(value, type);
-        feature.setAttr(key, parsed);
-      }
-    }
+  /**
+   * Compiles a set of tag keys into an {@link AttributePlan}. This should be
+   * done once per layer (not per feature), since it resolves each key's type
+   * and the localized name key up front.
+   */
+  public static AttributePlan compile(Set<String> keys, Configuration config) {
+    return compile(keys, config, AttributePlan.Mode.ADAPTIVE);
   }
 
-  public static void setAttributesWithMinzoom(
-    SourceFeature sf,
-    FeatureCollector.Feature feature,
+  public static AttributePlan compile(
     Set<String> keys,
-    int minZoom,
-    Configuration config
+    Configuration config,
+    AttributePlan.Mode mode
   ) {
-    for (var key : keys) {
-      var value = getValue(sf, key, config);
-      if (value != null) {
-        var type = getType(key);
-        var parsed = parse(value, type);
-        feature.setAttrWithMinzoom(key, parsed, minZoom);
-      }
-    }
-  }
-
-  private static String getValue(SourceFeature sf, String key, Configuration config) {
-    if ("name".equals(key) && config.hasLanguage()) {
-      String localizedName = sf.getString("name:" + config.language());
-      if (localizedName != null) {
-        return localizedName;
-      }
-    }
-    return sf.getString(key);
+    return new AttributePlan(keys, config, mode);
   }
 
   private static Object parseBoolOrNull(String value) {
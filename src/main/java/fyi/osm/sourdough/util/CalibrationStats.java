@@ -0,0 +1,219 @@
+package fyi.osm.sourdough.util;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statistics gathered during a build for calibrating min zooms: how densely
+ * each class of point (e.g. {@code places/town}) is packed into tiles, which
+ * min zooms the layers assigned to it, and how large each class of polygon is.
+ *
+ * <p>From these, {@link #write} computes a min zoom offset for each point
+ * class: how far its features need to move so that, at the zoom where they
+ * first appear, tiles hold no more than a target number of them. Later builds
+ * read the offsets with {@link MinZoomOffsets}. Only points are calibrated,
+ * which includes the label points of areas; polygon sizes are reported, but
+ * the pixel size thresholds that layers apply to polygons aren't changed.
+ *
+ * <p>Each thread records into counts of its own, so recording takes no locks,
+ * and {@link #write} merges them once the build is done.
+ */
+public final class CalibrationStats {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CalibrationStats.class);
+
+  // point counts are kept per tile at this zoom, and summed for lower zooms
+  private static final int COUNT_ZOOM = 10;
+  // highest min zoom to calibrate to (features need at least one zoom to appear at)
+  private static final int MAX_ZOOM = PlanetilerConfig.MAX_MAXZOOM - 1;
+
+  // polygon areas are binned by powers of two, in square pixels at z14
+  private static final int AREA_BINS = 64;
+  private static final double Z14_PIXELS = 256d * (1 << 14);
+
+  private final Queue<Counts> threadCounts = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Counts> counts = ThreadLocal.withInitial(() -> {
+    var result = new Counts();
+    threadCounts.add(result);
+    return result;
+  });
+
+  // the statistics recorded by one thread
+  private static final class Counts {
+
+    final Map<String, PointClass> points = new HashMap<>();
+    final Map<String, long[]> areas = new HashMap<>();
+  }
+
+  private static final class PointClass {
+
+    final LongIntHashMap tileCounts = new LongIntHashMap();
+    final long[] minZooms = new long[MAX_ZOOM + 2];
+
+    void add(PointClass other) {
+      for (var cursor : other.tileCounts) {
+        tileCounts.addTo(cursor.key, cursor.value);
+      }
+      for (int z = 0; z < minZooms.length; z++) {
+        minZooms[z] += other.minZooms[z];
+      }
+    }
+  }
+
+  /**
+   * Records a point feature of a class, at world coordinates {@code (x, y)}
+   * (each from 0 to 1), that a layer gave {@code minZoom}.
+   */
+  public void recordPoint(String key, double x, double y, int minZoom) {
+    var point = counts.get().points.computeIfAbsent(key, k -> new PointClass());
+    point.minZooms[Math.clamp(minZoom, 0, MAX_ZOOM + 1)]++;
+
+    int tiles = 1 << COUNT_ZOOM;
+    long tileX = Math.clamp((long) (x * tiles), 0, tiles - 1);
+    long tileY = Math.clamp((long) (y * tiles), 0, tiles - 1);
+    point.tileCounts.addTo(tileX * tiles + tileY, 1);
+  }
+
+  /** Records a polygon feature of a class, with an area in world units (0 to 1 squared). */
+  public void recordArea(String key, double worldArea) {
+    double pixels = worldArea * Z14_PIXELS * Z14_PIXELS;
+    int bin = pixels < 1
+      ? 0
+      : Math.min(AREA_BINS - 1, 1 + (int) (Math.log(pixels) / Math.log(2)));
+    counts.get().areas.computeIfAbsent(key, k -> new long[AREA_BINS])[bin]++;
+  }
+
+  /**
+   * Computes min zoom offsets that keep each point class under
+   * {@code targetPerTile} features per tile, and writes them (along with the
+   * statistics they came from) to {@code path}.
+   */
+  public void write(Path path, int targetPerTile) throws IOException {
+    var points = new TreeMap<String, PointClass>();
+    var areas = new TreeMap<String, long[]>();
+    for (var thread : threadCounts) {
+      for (var entry : thread.points.entrySet()) {
+        points.computeIfAbsent(entry.getKey(), k -> new PointClass()).add(entry.getValue());
+      }
+      for (var entry : thread.areas.entrySet()) {
+        var bins = areas.computeIfAbsent(entry.getKey(), k -> new long[AREA_BINS]);
+        for (int i = 0; i < AREA_BINS; i++) {
+          bins[i] += entry.getValue()[i];
+        }
+      }
+    }
+
+    var offsets = new TreeMap<String, Integer>();
+    var densities = new TreeMap<String, Object>();
+    for (var entry : points.entrySet()) {
+      var point = entry.getValue();
+      long[] busiest = busiestTileCounts(point.tileCounts);
+
+      int calibrated = MAX_ZOOM;
+      for (int z = 0; z <= MAX_ZOOM; z++) {
+        if (busiest[z] <= targetPerTile) {
+          calibrated = z;
+          break;
+        }
+      }
+      int assigned = lowestAssignedMinZoom(point.minZooms);
+      offsets.put(entry.getKey(), calibrated - assigned);
+
+      var density = new LinkedHashMap<String, Object>();
+      density.put("assigned_min_zoom", assigned);
+      density.put("calibrated_min_zoom", calibrated);
+      density.put("busiest_tile_counts", busiest);
+      densities.put(entry.getKey(), density);
+    }
+
+    var polygonAreas = new TreeMap<String, Object>();
+    for (var entry : areas.entrySet()) {
+      polygonAreas.put(entry.getKey(), percentiles(entry.getValue()));
+    }
+
+    var json = new LinkedHashMap<String, Object>();
+    json.put("target_per_tile", targetPerTile);
+    json.put("min_zoom_offsets", offsets);
+    json.put("point_densities", densities);
+    json.put("polygon_area_z14_pixels", polygonAreas);
+
+    var parent = path.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), json);
+    LOGGER.info("Wrote min zoom calibration for {} point classes to {}", offsets.size(), path);
+  }
+
+  /**
+   * Returns, for each zoom, the 95th percentile of the number of features per
+   * (non-empty) tile. Below {@link #COUNT_ZOOM} counts are summed into parent
+   * tiles; above it they are assumed to split evenly between child tiles.
+   */
+  private static long[] busiestTileCounts(LongIntHashMap tileCounts) {
+    var result = new long[MAX_ZOOM + 1];
+    int tiles = 1 << COUNT_ZOOM;
+    for (int z = 0; z <= Math.min(COUNT_ZOOM, MAX_ZOOM); z++) {
+      int shift = COUNT_ZOOM - z;
+      var counts = new LongIntHashMap();
+      for (var cursor : tileCounts) {
+        long x = cursor.key / tiles;
+        long y = cursor.key % tiles;
+        counts.addTo(((x >> shift) << 32) | (y >> shift), cursor.value);
+      }
+      result[z] = percentile95(counts.values().toArray());
+    }
+    for (int z = COUNT_ZOOM + 1; z <= MAX_ZOOM; z++) {
+      result[z] = Math.max(1, result[z - 1] / 4);
+    }
+    return result;
+  }
+
+  private static long percentile95(int[] counts) {
+    if (counts.length == 0) {
+      return 0;
+    }
+    Arrays.sort(counts);
+    return counts[(int) Math.floor((counts.length - 1) * 0.95)];
+  }
+
+  private static int lowestAssignedMinZoom(long[] minZooms) {
+    for (int z = 0; z < minZooms.length; z++) {
+      if (minZooms[z] > 0) {
+        return z;
+      }
+    }
+    return 0;
+  }
+
+  private static Map<String, Double> percentiles(long[] bins) {
+    long total = 0;
+    for (long count : bins) {
+      total += count;
+    }
+
+    var result = new LinkedHashMap<String, Double>();
+    var wanted = new ArrayList<>(Arrays.asList(10, 50, 90));
+    long seen = 0;
+    for (int i = 0; i < bins.length && !wanted.isEmpty(); i++) {
+      seen += bins[i];
+      while (!wanted.isEmpty() && seen * 100 >= total * wanted.get(0)) {
+        // upper edge of the bin
+        result.put("p" + wanted.remove(0), Math.pow(2, i));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,199 @@
+package fyi.osm.sourdough.util;
+
+import com.onthegomap.planetiler.VectorTile;
+import com.onthegomap.planetiler.geo.GeometryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Slims labels that several layers emit for the same OSM element, such as a
+ * hospital that's also a building and a healthcare facility, or a station in
+ * both the railways and public transport layers.
+ *
+ * <p>Labels are points, and two labels are the same if they have the same
+ * feature ID (so come from the same element) and the same position in the
+ * tile. Of each set of such labels in a tile, the one with the most
+ * attributes keeps them all, and the others drop every attribute that the
+ * canonical label has with the same value, except their layer's primary tags.
+ * Clients can find a slimmed label's name, wikidata and so on from the label
+ * at the same position in another layer.
+ *
+ * <p>When the archive is also split into layer groups, each group needs
+ * canonical labels of its own, so a label is only slimmed if every archive
+ * its layer ends up in (the full one, and each group it's in) has another
+ * label that keeps the attributes it drops.
+ */
+public final class DuplicateLabels {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DuplicateLabels.class);
+
+  private final Function<String, Set<String>> primaryTags;
+  // the layers of each layer group
+  private final List<Set<String>> groups;
+  private final AtomicLong labels = new AtomicLong();
+  private final AtomicLong attributes = new AtomicLong();
+
+  // a label's identity: the element it came from and where it is in the tile
+  private record Key(long id, int[] commands) {
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key other && id == other.id && Arrays.equals(commands, other.commands);
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(id) * 31 + Arrays.hashCode(commands);
+    }
+  }
+
+  // a label, by its layer and position in that layer's list of features
+  private record Label(String layer, int index, VectorTile.Feature feature) {}
+
+  // the label with the most attributes first, breaking ties by layer name so
+  // that the same layer wins in every tile
+  private static final Comparator<Label> BY_RANK = Comparator.comparingInt(
+    (Label label) -> -label.feature().tags().size()
+  ).thenComparing(Label::layer);
+
+  /**
+   * @param primaryTags returns the attributes that a layer's labels always
+   *                    keep, even when slimmed
+   * @param groups      the layers of each layer group that the archive is
+   *                    split into, if any
+   */
+  public DuplicateLabels(Function<String, Set<String>> primaryTags, List<Set<String>> groups) {
+    this.primaryTags = primaryTags;
+    this.groups = groups;
+  }
+
+  /** Returns the features of a tile, with duplicate labels slimmed. */
+  public Map<String, List<VectorTile.Feature>> apply(Map<String, List<VectorTile.Feature>> layers) {
+    var sameLabels = new HashMap<Key, List<Label>>();
+    for (var entry : layers.entrySet()) {
+      var features = entry.getValue();
+      for (int i = 0; i < features.size(); i++) {
+        var feature = features.get(i);
+        // features without an ID (e.g. merged ones) can't be matched up
+        if (feature.id() < 0 || feature.geometry().geomType() != GeometryType.POINT) {
+          continue;
+        }
+        var key = new Key(feature.id(), feature.geometry().commands());
+        sameLabels
+          .computeIfAbsent(key, k -> new ArrayList<>(1))
+          .add(new Label(entry.getKey(), i, feature));
+      }
+    }
+
+    Map<String, List<VectorTile.Feature>> result = null;
+    for (var same : sameLabels.values()) {
+      if (same.size() < 2) {
+        continue;
+      }
+      same.sort(BY_RANK);
+      for (var label : same) {
+        var canonicals = canonicals(label, same);
+        if (canonicals == null) {
+          continue;
+        }
+        var slimmed = slim(label, canonicals);
+        if (slimmed == null) {
+          continue;
+        }
+        if (result == null) {
+          result = new LinkedHashMap<>(layers);
+        }
+        var features = result.get(label.layer());
+        if (features == layers.get(label.layer())) {
+          features = new ArrayList<>(features);
+          result.put(label.layer(), features);
+        }
+        features.set(label.index(), slimmed);
+      }
+    }
+    return result == null ? layers : result;
+  }
+
+  /**
+   * Returns the canonical labels (the first of {@code same} that each archive
+   * has) of the full archive and of each group that {@code label}'s layer is
+   * in, or null if {@code label} is canonical in any of them.
+   */
+  private List<Label> canonicals(Label label, List<Label> same) {
+    if (same.get(0) == label) {
+      return null;
+    }
+    var result = new ArrayList<Label>();
+    result.add(same.get(0));
+    for (var group : groups) {
+      if (!group.contains(label.layer())) {
+        continue;
+      }
+      for (var other : same) {
+        if (group.contains(other.layer())) {
+          if (other == label) {
+            return null;
+          }
+          result.add(other);
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns {@code label} without the attributes that every one of
+   * {@code canonicals} has with the same value, or null if it has none to drop.
+   */
+  private VectorTile.Feature slim(Label label, List<Label> canonicals) {
+    var keep = primaryTags.apply(label.layer());
+    var feature = label.feature();
+    var tags = new HashMap<String, Object>();
+    for (var tag : feature.tags().entrySet()) {
+      if (keep.contains(tag.getKey()) || !sharedByAll(tag, canonicals)) {
+        tags.put(tag.getKey(), tag.getValue());
+      }
+    }
+    int dropped = feature.tags().size() - tags.size();
+    if (dropped == 0) {
+      return null;
+    }
+    labels.incrementAndGet();
+    attributes.addAndGet(dropped);
+    return new VectorTile.Feature(
+      feature.layer(),
+      feature.id(),
+      feature.geometry(),
+      tags,
+      feature.group()
+    );
+  }
+
+  private static boolean sharedByAll(Map.Entry<String, Object> tag, List<Label> canonicals) {
+    for (var canonical : canonicals) {
+      if (!Objects.equals(tag.getValue(), canonical.feature().tags().get(tag.getKey()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void report() {
+    LOGGER.info(
+      "Slimmed {} duplicate labels, dropping {} repeated attributes",
+      labels.get(),
+      attributes.get()
+    );
+  }
+}
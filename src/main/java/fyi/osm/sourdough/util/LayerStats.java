@@ -0,0 +1,334 @@
+package fyi.osm.sourdough.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
+import com.onthegomap.planetiler.ForwardingProfile.Handler;
+import com.onthegomap.planetiler.ForwardingProfile.LayerPostProcessor;
+import com.onthegomap.planetiler.ForwardingProfile.OsmRelationPreprocessor;
+import com.onthegomap.planetiler.VectorTile;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.expression.Expression;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.reader.osm.OsmElement;
+import com.onthegomap.planetiler.reader.osm.OsmRelationInfo;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-layer counters for {@code processFeature} and {@code postProcess} calls,
+ * used to find out which layers dominate build time.
+ *
+ * <p>Layers are instrumented by wrapping them (see {@link #instrument}) before
+ * they are registered with the profile, so when instrumentation is turned off
+ * the layers run exactly as they otherwise would. The wrappers call the layer
+ * directly, and emitted features are counted once per source feature (see
+ * {@link #countEmitted}), both in total and at each zoom they appear at.
+ * Counters are {@link LongAdder}s, so the many worker threads don't contend on
+ * them.
+ */
+public final class LayerStats {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LayerStats.class);
+
+  private static final int ZOOMS = PlanetilerConfig.MAX_MAXZOOM + 1;
+
+  private final Map<String, Counters> layers = new ConcurrentHashMap<>();
+
+  private static final class Counters {
+
+    // processFeature: calls, output features created, and time spent
+    final LongAdder calls = new LongAdder();
+    final LongAdder emitted = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    // output features that appear at each zoom
+    final LongAdder[] emittedAtZoom = adders();
+
+    // postProcess, per zoom: calls, features in and out, and time spent
+    final LongAdder[] postCalls = adders();
+    final LongAdder[] postInput = adders();
+    final LongAdder[] postOutput = adders();
+    final LongAdder[] postNanos = adders();
+
+    private static LongAdder[] adders() {
+      var result = new LongAdder[ZOOMS];
+      for (int i = 0; i < ZOOMS; i++) {
+        result[i] = new LongAdder();
+      }
+      return result;
+    }
+  }
+
+  private Counters counters(String layer) {
+    return layers.computeIfAbsent(layer, name -> new Counters());
+  }
+
+  /**
+   * Returns a handler that behaves like {@code layer} (and implements the same
+   * handler interfaces), but records its {@code processFeature} and
+   * {@code postProcess} calls against {@code name}. Handlers that don't
+   * process features are returned as they are.
+   */
+  public Handler instrument(String name, Handler layer) {
+    if (!(layer instanceof FeatureProcessor processor)) {
+      return layer;
+    }
+    var counters = counters(name);
+    return switch (layer) {
+      case LayerPostProcessor post when layer instanceof OsmRelationPreprocessor relations -> {
+        yield new InstrumentedRelationPostProcessor(processor, counters, post, relations);
+      }
+      case LayerPostProcessor post -> new InstrumentedPostProcessor(processor, counters, post);
+      case OsmRelationPreprocessor relations -> {
+        yield new InstrumentedRelationProcessor(processor, counters, relations);
+      }
+      default -> new InstrumentedProcessor(processor, counters);
+    };
+  }
+
+  /**
+   * Returns a feature processor that records its calls against {@code layer},
+   * for processors registered separately from the layer (like those for a
+   * specific source).
+   */
+  public FeatureProcessor instrumentSource(String layer, FeatureProcessor processor) {
+    return new InstrumentedProcessor(processor, counters(layer));
+  }
+
+  /**
+   * Counts the features in {@code fc} against the layers they're in. Called
+   * once per source feature, after every layer has processed it, so the
+   * collector is only walked once however many layers use the feature.
+   */
+  public void countEmitted(FeatureCollector fc) {
+    String layer = null;
+    Counters counters = null;
+    for (var feature : fc) {
+      // features from the same layer are usually next to each other
+      if (!feature.getLayer().equals(layer)) {
+        layer = feature.getLayer();
+        counters = counters(layer);
+      }
+      counters.emitted.increment();
+      int maxZoom = Math.min(feature.getMaxZoom(), ZOOMS - 1);
+      for (int z = Math.max(feature.getMinZoom(), 0); z <= maxZoom; z++) {
+        counters.emittedAtZoom[z].increment();
+      }
+    }
+  }
+
+  /** Times and counts the {@code processFeature} calls of a layer. */
+  private static class InstrumentedProcessor implements FeatureProcessor {
+
+    private final FeatureProcessor delegate;
+    final Counters counters;
+
+    InstrumentedProcessor(FeatureProcessor delegate, Counters counters) {
+      this.delegate = delegate;
+      this.counters = counters;
+    }
+
+    @Override
+    public Expression filter() {
+      return delegate.filter();
+    }
+
+    @Override
+    public void processFeature(SourceFeature sf, FeatureCollector fc) {
+      long start = System.nanoTime();
+      try {
+        delegate.processFeature(sf, fc);
+      } finally {
+        counters.nanos.add(System.nanoTime() - start);
+        counters.calls.increment();
+      }
+    }
+  }
+
+  /** Also times and counts the {@code postProcess} calls of a layer. */
+  private static class InstrumentedPostProcessor
+    extends InstrumentedProcessor
+    implements LayerPostProcessor {
+
+    private final LayerPostProcessor delegate;
+
+    InstrumentedPostProcessor(
+      FeatureProcessor processor,
+      Counters counters,
+      LayerPostProcessor delegate
+    ) {
+      super(processor, counters);
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String name() {
+      return delegate.name();
+    }
+
+    @Override
+    public List<VectorTile.Feature> postProcess(int zoom, List<VectorTile.Feature> items)
+      throws GeometryException {
+      int input = items.size();
+      long start = System.nanoTime();
+      var result = delegate.postProcess(zoom, items);
+      counters.postNanos[zoom].add(System.nanoTime() - start);
+      counters.postCalls[zoom].increment();
+      counters.postInput[zoom].add(input);
+      counters.postOutput[zoom].add(result == null ? input : result.size());
+      return result;
+    }
+  }
+
+  /** Passes relation preprocessing through to a layer without post-processing. */
+  private static final class InstrumentedRelationProcessor
+    extends InstrumentedProcessor
+    implements OsmRelationPreprocessor {
+
+    private final OsmRelationPreprocessor relations;
+
+    InstrumentedRelationProcessor(
+      FeatureProcessor processor,
+      Counters counters,
+      OsmRelationPreprocessor relations
+    ) {
+      super(processor, counters);
+      this.relations = relations;
+    }
+
+    @Override
+    public List<OsmRelationInfo> preprocessOsmRelation(OsmElement.Relation relation) {
+      return relations.preprocessOsmRelation(relation);
+    }
+  }
+
+  /** Passes relation preprocessing through to a layer with post-processing. */
+  private static final class InstrumentedRelationPostProcessor
+    extends InstrumentedPostProcessor
+    implements OsmRelationPreprocessor {
+
+    private final OsmRelationPreprocessor relations;
+
+    InstrumentedRelationPostProcessor(
+      FeatureProcessor processor,
+      Counters counters,
+      LayerPostProcessor post,
+      OsmRelationPreprocessor relations
+    ) {
+      super(processor, counters, post);
+      this.relations = relations;
+    }
+
+    @Override
+    public List<OsmRelationInfo> preprocessOsmRelation(OsmElement.Relation relation) {
+      return relations.preprocessOsmRelation(relation);
+    }
+  }
+
+  /**
+   * Writes the counters to {@code path} as JSON, and logs a summary table with
+   * the most expensive layers first.
+   */
+  public void report(Path path) throws IOException {
+    var entries = new ArrayList<>(layers.entrySet());
+    entries.sort(
+      Comparator.comparingLong((Map.Entry<String, Counters> e) -> totalNanos(e.getValue()))
+        .reversed()
+    );
+
+    var json = new ArrayList<Map<String, Object>>();
+    for (var entry : entries) {
+      json.add(toJson(entry.getKey(), entry.getValue()));
+    }
+    var parent = path.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    new ObjectMapper()
+      .writerWithDefaultPrettyPrinter()
+      .writeValue(path.toFile(), Map.of("layers", json));
+    LOGGER.info("Wrote layer stats to {}", path);
+
+    LOGGER.info(
+      String.format(
+        "%-18s %12s %12s %10s %10s %12s %12s",
+        "layer",
+        "features",
+        "emitted",
+        "process ms",
+        "post ms",
+        "post in",
+        "post out"
+      )
+    );
+    for (var entry : entries) {
+      var c = entry.getValue();
+      LOGGER.info(
+        String.format(
+          "%-18s %12d %12d %10d %10d %12d %12d",
+          entry.getKey(),
+          c.calls.sum(),
+          c.emitted.sum(),
+          c.nanos.sum() / 1_000_000,
+          sum(c.postNanos) / 1_000_000,
+          sum(c.postInput),
+          sum(c.postOutput)
+        )
+      );
+    }
+  }
+
+  private static Map<String, Object> toJson(String layer, Counters c) {
+    var zooms = new ArrayList<Map<String, Object>>();
+    for (int z = 0; z < ZOOMS; z++) {
+      long calls = c.postCalls[z].sum();
+      if (calls == 0) {
+        continue;
+      }
+      var zoom = new LinkedHashMap<String, Object>();
+      zoom.put("zoom", z);
+      zoom.put("calls", calls);
+      zoom.put("features_in", c.postInput[z].sum());
+      zoom.put("features_out", c.postOutput[z].sum());
+      zoom.put("nanos", c.postNanos[z].sum());
+      zooms.add(zoom);
+    }
+
+    var processFeature = new LinkedHashMap<String, Object>();
+    processFeature.put("calls", c.calls.sum());
+    processFeature.put("features_emitted", c.emitted.sum());
+    var emittedAtZoom = new long[ZOOMS];
+    for (int z = 0; z < ZOOMS; z++) {
+      emittedAtZoom[z] = c.emittedAtZoom[z].sum();
+    }
+    processFeature.put("features_emitted_by_zoom", emittedAtZoom);
+    processFeature.put("nanos", c.nanos.sum());
+
+    var result = new LinkedHashMap<String, Object>();
+    result.put("layer", layer);
+    result.put("process_feature", processFeature);
+    result.put("post_process", zooms);
+    return result;
+  }
+
+  private static long totalNanos(Counters c) {
+    return c.nanos.sum() + sum(c.postNanos);
+  }
+
+  private static long sum(LongAdder[] adders) {
+    long total = 0;
+    for (var adder : adders) {
+      total += adder.sum();
+    }
+    return total;
+  }
+}
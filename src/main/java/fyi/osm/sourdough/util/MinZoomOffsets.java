@@ -0,0 +1,42 @@
+package fyi.osm.sourdough.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Min zoom offsets for classes of point features (e.g. {@code places/town}),
+ * read from a file written by {@link CalibrationStats}. An offset shifts every
+ * feature of the class by the same amount, so the relative order that a layer
+ * gives features within a class (e.g. by population) is kept.
+ */
+public final class MinZoomOffsets {
+
+  private final Map<String, Integer> offsets;
+
+  private MinZoomOffsets(Map<String, Integer> offsets) {
+    this.offsets = offsets;
+  }
+
+  public static MinZoomOffsets read(Path path) throws IOException {
+    var json = new ObjectMapper().readTree(path.toFile());
+    var offsets = new HashMap<String, Integer>();
+    var fields = json.path("min_zoom_offsets").fields();
+    while (fields.hasNext()) {
+      var field = fields.next();
+      offsets.put(field.getKey(), field.getValue().asInt());
+    }
+    return new MinZoomOffsets(offsets);
+  }
+
+  /** Returns the offset for a class, or 0 if it wasn't calibrated. */
+  public int offset(String key) {
+    return offsets.getOrDefault(key, 0);
+  }
+
+  public int size() {
+    return offsets.size();
+  }
+}
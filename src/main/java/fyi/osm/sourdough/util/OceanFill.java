@@ -0,0 +1,129 @@
+package fyi.osm.sourdough.util;
+
+import com.onthegomap.planetiler.VectorTile;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.geo.GeometryType;
+import com.onthegomap.planetiler.geo.TileCoord;
+import fyi.osm.sourdough.layers.Water;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Polygon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects open ocean tiles: tiles whose only feature is the ocean polygon,
+ * covering the whole tile. Most of the planet's tiles are like this.
+ *
+ * <p>{@link #findFill} lets the water layer skip merging the ocean pieces of
+ * such a tile, and {@link #apply} replaces the tile's contents with one
+ * canonical feature, so that every open ocean tile encodes to the same bytes
+ * and is stored once in the archive.
+ */
+public final class OceanFill {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OceanFill.class);
+
+  // tile size and the ocean polygon's buffer, in pixels (see Water.processPreparedOsm)
+  private static final double SIZE = 256;
+  private static final double BUFFER = 8;
+
+  private static final VectorTile.Feature CANONICAL = new VectorTile.Feature(
+    Water.LAYER_NAME,
+    -1,
+    VectorTile.encodeGeometry(
+      GeoUtils.JTS_FACTORY.toGeometry(
+        new Envelope(-BUFFER, SIZE + BUFFER, -BUFFER, SIZE + BUFFER)
+      )
+    ),
+    Map.of("water", "ocean", "salt", "yes")
+  );
+
+  private final AtomicLongArray tiles = new AtomicLongArray(PlanetilerConfig.MAX_MAXZOOM + 1);
+
+  /** Returns true if {@code feature} is (part of) the ocean polygon. */
+  public static boolean isOcean(VectorTile.Feature feature) {
+    return feature.id() == -1 && "ocean".equals(feature.tags().get("water"));
+  }
+
+  /** Returns true if {@code feature} is a polygon that covers its whole tile. */
+  public static boolean isFill(VectorTile.Feature feature) {
+    if (feature.geometry().geomType() != GeometryType.POLYGON) {
+      return false;
+    }
+    try {
+      if (!(feature.geometry().decode() instanceof Polygon polygon)) {
+        return false;
+      }
+      var envelope = polygon.getEnvelopeInternal();
+      return (
+        polygon.getNumInteriorRing() == 0 &&
+        envelope.getMinX() <= 0 &&
+        envelope.getMinY() <= 0 &&
+        envelope.getMaxX() >= SIZE &&
+        envelope.getMaxY() >= SIZE &&
+        polygon.getArea() >= envelope.getArea() * 0.999
+      );
+    } catch (GeometryException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns one of {@code items} that fills the tile, if every item is part of
+   * the ocean, or null otherwise.
+   */
+  public static VectorTile.Feature findFill(List<VectorTile.Feature> items) {
+    VectorTile.Feature fill = null;
+    for (var item : items) {
+      if (!isOcean(item)) {
+        return null;
+      }
+      if (fill == null && isFill(item)) {
+        fill = item;
+      }
+    }
+    return fill;
+  }
+
+  /**
+   * Returns the canonical open ocean tile if {@code layers} is one, and
+   * {@code layers} unchanged otherwise.
+   */
+  public Map<String, List<VectorTile.Feature>> apply(
+    TileCoord tile,
+    Map<String, List<VectorTile.Feature>> layers
+  ) {
+    List<VectorTile.Feature> water = null;
+    for (var entry : layers.entrySet()) {
+      if (entry.getKey().equals(Water.LAYER_NAME)) {
+        water = entry.getValue();
+      } else if (!entry.getValue().isEmpty()) {
+        return layers;
+      }
+    }
+    if (water == null || water.size() != 1 || findFill(water) == null) {
+      return layers;
+    }
+    tiles.incrementAndGet(tile.z());
+    return Map.of(Water.LAYER_NAME, List.of(CANONICAL));
+  }
+
+  public void report() {
+    long total = 0;
+    var perZoom = new StringJoiner(", ");
+    for (int z = 0; z < tiles.length(); z++) {
+      long count = tiles.get(z);
+      if (count > 0) {
+        total += count;
+        perZoom.add("z" + z + ": " + count);
+      }
+    }
+    LOGGER.info("Open ocean tiles stored as a shared fill tile: {} ({})", total, perZoom);
+  }
+}
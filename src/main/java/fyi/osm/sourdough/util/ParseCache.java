@@ -0,0 +1,95 @@
+package fyi.osm.sourdough.util;
+
+import fyi.osm.sourdough.util.AttributeProcessor.AttributeType;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * A small per-thread cache of parsed numeric attribute values. Values like
+ * {@code height=10} or {@code building:levels=3} repeat constantly across the
+ * planet, so remembering the last few thousand lets most features skip parsing
+ * (and boxing) entirely.
+ *
+ * <p>Each thread has its own direct-mapped table: a raw string and type hash
+ * to a single slot, and a new entry simply replaces whatever was there before.
+ * This keeps lookups lock-free and the memory use fixed.
+ */
+public final class ParseCache {
+
+  private static final int SIZE = 4096;
+  private static final int MASK = SIZE - 1;
+
+  // longer values are unlikely to repeat, so don't let them evict useful entries
+  private static final int MAX_CACHED_LENGTH = 24;
+
+  // stands in for a cached null result (i.e. a value that failed to parse)
+  private static final Object NULL = new Object();
+
+  private static final Queue<ParseCache> ALL = new ConcurrentLinkedQueue<>();
+
+  private static final ThreadLocal<ParseCache> LOCAL = ThreadLocal.withInitial(() -> {
+    var cache = new ParseCache();
+    ALL.add(cache);
+    return cache;
+  });
+
+  private final String[] raws = new String[SIZE];
+  private final AttributeType[] types = new AttributeType[SIZE];
+  private final Object[] values = new Object[SIZE];
+  private long hits = 0;
+  private long misses = 0;
+
+  private ParseCache() {}
+
+  /**
+   * Returns the parsed form of {@code raw}, calling {@code parser} only if this
+   * thread hasn't parsed the same string as the same type recently.
+   */
+  static Object get(String raw, AttributeType type, Function<String, Object> parser) {
+    if (raw.length() > MAX_CACHED_LENGTH) {
+      return parser.apply(raw);
+    }
+    return LOCAL.get().lookup(raw, type, parser);
+  }
+
+  private Object lookup(String raw, AttributeType type, Function<String, Object> parser) {
+    int h = raw.hashCode() * 31 + type.ordinal();
+    int slot = (h ^ (h >>> 16)) & MASK;
+
+    String cached = raws[slot];
+    if (types[slot] == type && cached != null && (cached == raw || cached.equals(raw))) {
+      hits++;
+      var value = values[slot];
+      return value == NULL ? null : value;
+    }
+
+    misses++;
+    var value = parser.apply(raw);
+    raws[slot] = raw;
+    types[slot] = type;
+    values[slot] = value == null ? NULL : value;
+    return value;
+  }
+
+  public record Stats(long hits, long misses) {
+    public double hitRate() {
+      long total = hits + misses;
+      return total == 0 ? 0 : (double) hits / total;
+    }
+  }
+
+  /**
+   * Returns hit and miss counts summed across every thread's cache. Counts are
+   * only exact once the threads using the caches have finished.
+   */
+  public static Stats stats() {
+    long hits = 0;
+    long misses = 0;
+    for (var cache : ALL) {
+      hits += cache.hits;
+      misses += cache.misses;
+    }
+    return new Stats(hits, misses);
+  }
+}
@@ -0,0 +1,81 @@
+package fyi.osm.sourdough.util;
+
+import com.onthegomap.planetiler.VectorTile;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the largest few feature lists passed to each layer's
+ * {@code postProcess} at each zoom, so they can be replayed by the
+ * post-processing benchmarks. Build an area with dense tiles (like a big city)
+ * to record inputs that exercise the merge pipelines the way a planet build
+ * does.
+ *
+ * <p>Recordings are the features <em>before</em> post-processing, encoded as a
+ * single-layer vector tile. They are written to
+ * {@code <dir>/<layer>-z<zoom>-<rank>.pbf}, with rank 0 being the largest.
+ */
+public final class PostProcessRecorder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PostProcessRecorder.class);
+
+  /** How many inputs to keep for each layer and zoom. */
+  private static final int KEEP = 4;
+
+  private record Recording(int features, byte[] encoded) {}
+
+  private static final class Slot {
+
+    final PriorityQueue<Recording> largest = new PriorityQueue<>(
+      (a, b) -> Integer.compare(a.features(), b.features())
+    );
+    // size of the smallest recording kept once the slot is full, read without
+    // locking so that most lists can be skipped cheaply
+    volatile int threshold = 0;
+  }
+
+  private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+  /** Offers a layer's features (before post-processing) for recording. */
+  public void offer(String layer, int zoom, List<VectorTile.Feature> items) {
+    var slot = slots.computeIfAbsent(layer + "-z" + zoom, key -> new Slot());
+    if (items.size() <= slot.threshold) {
+      return;
+    }
+
+    var encoded = new VectorTile().addLayerFeatures(layer, items).encode();
+    synchronized (slot) {
+      slot.largest.add(new Recording(items.size(), encoded));
+      if (slot.largest.size() > KEEP) {
+        slot.largest.poll();
+      }
+      if (slot.largest.size() == KEEP) {
+        slot.threshold = slot.largest.peek().features();
+      }
+    }
+  }
+
+  /** Writes all recordings into {@code dir}. */
+  public void write(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    int count = 0;
+    for (var entry : slots.entrySet()) {
+      var recordings = entry.getValue().largest.stream()
+        .sorted((a, b) -> Integer.compare(b.features(), a.features()))
+        .toList();
+      for (int rank = 0; rank < recordings.size(); rank++) {
+        var path = dir.resolve(entry.getKey() + "-" + rank + ".pbf");
+        Files.write(path, recordings.get(rank).encoded());
+        count++;
+      }
+    }
+    LOGGER.info("Wrote {} recorded postProcess inputs to {}", count, dir);
+  }
+}
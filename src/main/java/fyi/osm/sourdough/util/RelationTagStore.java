@@ -0,0 +1,92 @@
+package fyi.osm.sourdough.util;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import com.onthegomap.planetiler.reader.osm.OsmElement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact table of tag values for OSM relations, keyed by relation id.
+ *
+ * <p>Storing a record of strings per relation costs an object header, a
+ * reference and usually a separate {@link String} for every tag, even though
+ * most values (like {@code network=US:I} or {@code operator=MBTA}) are shared
+ * by thousands of relations. Here each distinct value is stored once, and each
+ * relation is a row of int references to those values in one shared array, so
+ * a relation costs a few bytes per tag no matter how many tags are kept.
+ *
+ * <p>The columns are the keys of an {@link AttributePlan}, and values are read
+ * through it, so that (like attributes set from a feature) {@code name} is
+ * localized and each configured language has a column of its own.
+ *
+ * <p>Relations are added during the relation pass (from several threads), and
+ * read while processing ways, once all relations have been added.
+ */
+public final class RelationTagStore {
+
+  private final AttributePlan plan;
+  private final String[] keys;
+
+  // row number for each relation id
+  private final LongIntHashMap rows = new LongIntHashMap();
+
+  // value references for each row (keys.length per row), indexing into values
+  // (where index 0 means the tag isn't present)
+  private int[] cells = new int[0];
+
+  // distinct tag values, and the index of each in that list
+  private final List<String> values = new ArrayList<>(List.of(""));
+  private final ObjectIntHashMap<String> valueIndex = new ObjectIntHashMap<>();
+
+  public RelationTagStore(AttributePlan plan) {
+    this.plan = plan;
+    this.keys = plan.keys().toArray(String[]::new);
+  }
+
+  /** Returns the keys whose values are stored, in column order. */
+  public List<String> keys() {
+    return List.of(keys);
+  }
+
+  /** Stores the values of this store's plan on {@code relation}. */
+  public synchronized void add(OsmElement.Relation relation) {
+    int row = rows.size();
+    if (!rows.putIfAbsent(relation.id(), row)) {
+      return;
+    }
+
+    int start = row * keys.length;
+    if (start + keys.length > cells.length) {
+      cells = Arrays.copyOf(cells, Math.max(keys.length * 1024, cells.length * 2));
+    }
+    for (int i = 0; i < keys.length; i++) {
+      cells[start + i] = intern(plan.getString(relation, i));
+    }
+  }
+
+  private int intern(String value) {
+    if (value == null) {
+      return 0;
+    }
+    int index = valueIndex.getOrDefault(value, 0);
+    if (index == 0) {
+      index = values.size();
+      values.add(value);
+      valueIndex.put(value, index);
+    }
+    return index;
+  }
+
+  /** Returns the row for a relation, or -1 if it was never added. */
+  public int row(long relationId) {
+    return rows.getOrDefault(relationId, -1);
+  }
+
+  /** Returns the value in a row and column, or null if the tag wasn't present. */
+  public String get(int row, int column) {
+    int index = cells[row * keys.length + column];
+    return index == 0 ? null : values.get(index);
+  }
+}
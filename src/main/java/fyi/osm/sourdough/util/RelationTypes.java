@@ -0,0 +1,13 @@
+package fyi.osm.sourdough.util;
+
+import java.util.Set;
+
+/**
+ * Implemented by layers that read relations through relation preprocessing,
+ * which their filter expressions don't select, so that
+ * {@link SlimExtract} keeps those relations (and their members).
+ */
+public interface RelationTypes {
+  /** Returns the {@code type} tag values of the relations this layer preprocesses. */
+  Set<String> relationTypes();
+}
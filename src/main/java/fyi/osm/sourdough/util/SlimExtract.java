@@ -0,0 +1,186 @@
+package fyi.osm.sourdough.util;
+
+import com.onthegomap.planetiler.expression.Expression;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A copy of an OSM extract with only the elements that the selected layers
+ * can use, for repeated builds of the same area. The elements are worked out
+ * from the layers' filter expressions, and the copy is made with
+ * {@code osmium tags-filter} (which also keeps the nodes and members that
+ * matching ways and relations refer to). Copies are named after a hash of the
+ * filter, so changing the layers selects (or makes) a different copy.
+ *
+ * <p>Relations that layers read through relation preprocessing (see
+ * {@link RelationTypes}) aren't selected by their filters, so they are kept by
+ * type, and the types are part of the hash too.
+ */
+public final class SlimExtract {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SlimExtract.class);
+
+  // relations Planetiler assembles into areas, kept whatever the layers select
+  private static final String AREA_RELATION_TYPE = "multipolygon";
+
+  private SlimExtract() {}
+
+  /**
+   * Returns the slim copy of {@code extract} for {@code filters} and the
+   * preprocessed {@code relationTypes}, making it first if needed. Returns
+   * {@code extract} itself if the filters can match elements without any
+   * particular tag (so nothing can be left out), or if the copy can't be made.
+   */
+  public static Path prepare(
+    Path extract,
+    Collection<Expression> filters,
+    Collection<String> relationTypes
+  ) throws IOException {
+    var expressions = expressions(filters, relationTypes);
+    if (expressions == null) {
+      LOGGER.warn("Some layers match elements without any particular tag, using {}", extract);
+      return extract;
+    }
+
+    var name = extract.getFileName().toString().replaceFirst("\\.osm\\.pbf$", "");
+    var slim = extract.resolveSibling(name + ".slim-" + hash(expressions) + ".osm.pbf");
+    if (Files.exists(slim) && isNewer(slim, extract)) {
+      LOGGER.info("Using slim extract {}", slim);
+      return slim;
+    }
+    if (!Files.exists(extract)) {
+      LOGGER.warn("{} hasn't been downloaded yet, so there's no slim copy of it", extract);
+      return extract;
+    }
+
+    var expressionsFile = slim.resolveSibling(slim.getFileName() + ".filters.txt");
+    Files.write(expressionsFile, expressions);
+    var tmp = slim.resolveSibling(slim.getFileName() + ".tmp");
+    var command = List.of(
+      "osmium",
+      "tags-filter",
+      extract.toString(),
+      "--expressions=" + expressionsFile,
+      "--output=" + tmp,
+      "--output-format=pbf",
+      "--overwrite"
+    );
+    LOGGER.info("Making slim extract: {}", String.join(" ", command));
+    try {
+      int status = new ProcessBuilder(command).inheritIO().start().waitFor();
+      if (status != 0) {
+        LOGGER.warn("osmium exited with status {}, using {}", status, extract);
+        return extract;
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Couldn't run osmium ({}), using {}", e.getMessage(), extract);
+      return extract;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return extract;
+    }
+    Files.move(tmp, slim, StandardCopyOption.REPLACE_EXISTING);
+    LOGGER.info(
+      "Slim extract is {} MB, from {} MB",
+      Files.size(slim) >> 20,
+      Files.size(extract) >> 20
+    );
+    return slim;
+  }
+
+  /**
+   * Returns {@code osmium tags-filter} expressions that match (at least)
+   * every element that one of {@code filters} matches and every relation of
+   * one of {@code relationTypes}, or null if there are none that narrow it down.
+   */
+  static Set<String> expressions(Collection<Expression> filters, Collection<String> relationTypes) {
+    var result = new TreeSet<String>();
+    for (var filter : filters) {
+      var needs = needs(filter);
+      if (needs == null) {
+        return null;
+      }
+      result.addAll(needs);
+    }
+    var types = new TreeSet<String>(relationTypes);
+    types.add(AREA_RELATION_TYPE);
+    result.add("r/type=" + String.join(",", types));
+    return result;
+  }
+
+  /** Returns expressions matching everything {@code filter} matches, or null for anything. */
+  private static Set<String> needs(Expression filter) {
+    if (filter == Expression.FALSE) {
+      return Set.of();
+    }
+    return switch (filter) {
+      case Expression.MatchField field -> Set.of("nwr/" + field.field());
+      case Expression.MatchAny any -> {
+        if (any.matchWhenMissing()) {
+          yield null;
+        }
+        var values = new TreeSet<String>();
+        for (var value : any.values()) {
+          var string = String.valueOf(value);
+          // osmium can't express wildcards, or values containing its separators
+          if (string.contains("%") || string.contains(",") || string.contains("=")) {
+            yield Set.of("nwr/" + any.field());
+          }
+          values.add(string);
+        }
+        yield Set.of("nwr/" + any.field() + "=" + String.join(",", values));
+      }
+      case Expression.Or or -> {
+        var result = new TreeSet<String>();
+        for (var child : or.children()) {
+          var needs = needs(child);
+          if (needs == null) {
+            yield null;
+          }
+          result.addAll(needs);
+        }
+        yield result;
+      }
+      case Expression.And and -> {
+        // every child has to match, so what any one of them needs is enough
+        Set<String> narrowest = null;
+        for (var child : and.children()) {
+          var needs = needs(child);
+          if (needs != null && (narrowest == null || needs.size() < narrowest.size())) {
+            narrowest = needs;
+          }
+        }
+        yield narrowest;
+      }
+      default -> null;
+    };
+  }
+
+  private static String hash(Set<String> expressions) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256");
+      digest.update(String.join("\n", expressions).getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest.digest(), 0, 6);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static boolean isNewer(Path a, Path b) throws IOException {
+    return (
+      !Files.exists(b) || Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b)) >= 0
+    );
+  }
+}
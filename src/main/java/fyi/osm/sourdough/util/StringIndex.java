@@ -0,0 +1,50 @@
+package fyi.osm.sourdough.util;
+
+import java.util.List;
+
+/**
+ * The position of each of a fixed list of strings, in an open-addressed hash
+ * table, so that looking a string up on the hot path is a hash, a probe or two
+ * and an array read, with no boxing or map entries.
+ */
+public final class StringIndex {
+
+  private final String[] keys;
+  private final int[] positions;
+  private final int mask;
+
+  /** Indexes {@code strings}, which must not contain duplicates. */
+  public StringIndex(List<String> strings) {
+    // keep the table at most half full so probe sequences stay short
+    int capacity = Integer.highestOneBit(Math.max(1, strings.size()) * 4 - 1);
+    this.keys = new String[capacity];
+    this.positions = new int[capacity];
+    this.mask = capacity - 1;
+    for (int i = 0; i < strings.size(); i++) {
+      int pos = hash(strings.get(i)) & mask;
+      while (keys[pos] != null) {
+        pos = (pos + 1) & mask;
+      }
+      keys[pos] = strings.get(i);
+      positions[pos] = i;
+    }
+  }
+
+  /** Returns the position of {@code string} in the indexed list, or -1 if it isn't there. */
+  public int indexOf(String string) {
+    int pos = hash(string) & mask;
+    String candidate;
+    while ((candidate = keys[pos]) != null) {
+      if (candidate == string || candidate.equals(string)) {
+        return positions[pos];
+      }
+      pos = (pos + 1) & mask;
+    }
+    return -1;
+  }
+
+  private static int hash(String string) {
+    int h = string.hashCode();
+    return h ^ (h >>> 16);
+  }
+}
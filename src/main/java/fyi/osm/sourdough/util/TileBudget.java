@@ -0,0 +1,331 @@
+package fyi.osm.sourdough.util;
+
+import com.onthegomap.planetiler.VectorTile;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.geo.TileCoord;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps tiles under a per-zoom size limit, by trimming the least important
+ * data from tiles that would otherwise exceed it.
+ *
+ * <p>Trimming happens in two stages, each stopping as soon as the tile fits:
+ * <ol>
+ * <li>detail attributes are stripped (leaving each layer's primary tags), one
+ * layer at a time, least important layer first</li>
+ * <li>features are dropped, again least important layer first, and within
+ * each layer from the end of its order</li>
+ * </ol>
+ *
+ * <p>A layer's importance comes from its min zoom: layers whose features first
+ * appear at lower zooms are more important. Within a layer, Planetiler orders
+ * features by their sort key, so layers that rank their features (like places,
+ * by rank and population) lose the least important ones first.
+ *
+ * <p>Encoding a tile just to measure it is expensive, so each tile's size is
+ * first bounded from its features' geometry and attributes, and only tiles
+ * that might be over their limit are encoded.
+ */
+public final class TileBudget {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TileBudget.class);
+
+  private static final int ZOOMS = PlanetilerConfig.MAX_MAXZOOM + 1;
+
+  // how many trimmed tiles to list at the end of the build
+  private static final int REPORT_TILES = 20;
+
+  private final int[] limits;
+  private final Function<String, Set<String>> primaryTags;
+  private final ToIntFunction<String> layerMinZoom;
+  private final LongAdder trimmed = new LongAdder();
+  // the largest trimmed tiles so far, smallest first so it's the one to evict
+  private final PriorityQueue<Trim> largest = new PriorityQueue<>(
+    Comparator.comparingInt(Trim::originalBytes)
+  );
+
+  /** A tile that had to be trimmed to fit its budget. */
+  public record Trim(TileCoord tile, int originalBytes, int bytes, int droppedFeatures) {}
+
+  /**
+   * @param limits      maximum encoded (uncompressed) tile size in bytes at each
+   *                    zoom, or 0 for no limit
+   * @param primaryTags  returns the attributes to keep for a layer when
+   *                     stripping detail attributes
+   * @param layerMinZoom returns the lowest zoom a layer's features appear at,
+   *                     which ranks layers from most to least important
+   */
+  public TileBudget(
+    int[] limits,
+    Function<String, Set<String>> primaryTags,
+    ToIntFunction<String> layerMinZoom
+  ) {
+    this.limits = Arrays.copyOf(limits, ZOOMS);
+    this.primaryTags = primaryTags;
+    this.layerMinZoom = layerMinZoom;
+  }
+
+  /**
+   * Parses limits given as {@code bytes} (for all zooms) or {@code zoom:bytes}
+   * (for a single zoom, overriding the former).
+   */
+  public static int[] parseLimits(List<String> specs) {
+    var limits = new int[ZOOMS];
+    var zoomSpecific = new boolean[ZOOMS];
+    for (var spec : specs) {
+      var parts = spec.split(":", 2);
+      try {
+        if (parts.length == 1) {
+          int limit = Integer.parseInt(parts[0].trim());
+          for (int z = 0; z < ZOOMS; z++) {
+            if (!zoomSpecific[z]) {
+              limits[z] = limit;
+            }
+          }
+        } else {
+          int zoom = Integer.parseInt(parts[0].trim());
+          limits[zoom] = Integer.parseInt(parts[1].trim());
+          zoomSpecific[zoom] = true;
+        }
+      } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+        throw new IllegalArgumentException(
+          "Invalid tile budget '" + spec + "', expected bytes or zoom:bytes",
+          e
+        );
+      }
+    }
+    return limits;
+  }
+
+  public boolean isEnabled() {
+    return Arrays.stream(limits).anyMatch(limit -> limit > 0);
+  }
+
+  /**
+   * Returns the features of a tile, trimmed if needed so that the encoded tile
+   * is within the budget for its zoom.
+   */
+  public Map<String, List<VectorTile.Feature>> apply(
+    TileCoord tile,
+    Map<String, List<VectorTile.Feature>> layers
+  ) {
+    int limit = limits[tile.z()];
+    if (limit <= 0 || maxEncodedSize(layers) <= limit) {
+      return layers;
+    }
+    // a tile is just its layers one after another, so its size is the sum of
+    // theirs, and trimming a layer only needs that layer re-encoding
+    var layerBytes = new HashMap<String, Integer>();
+    int originalBytes = 0;
+    for (var entry : layers.entrySet()) {
+      int size = encodedSize(entry.getKey(), entry.getValue());
+      layerBytes.put(entry.getKey(), size);
+      originalBytes += size;
+    }
+    if (originalBytes <= limit) {
+      return layers;
+    }
+
+    // least important layers first
+    var order = new ArrayList<>(layers.keySet());
+    order.sort(
+      Comparator.comparingInt(layerMinZoom)
+        .reversed()
+        .thenComparing(Comparator.naturalOrder())
+    );
+
+    var result = new LinkedHashMap<String, List<VectorTile.Feature>>(layers);
+    int bytes = originalBytes;
+
+    for (var layer : order) {
+      var stripped = stripDetails(result.get(layer), primaryTags.apply(layer));
+      result.put(layer, stripped);
+      bytes += resize(layerBytes, layer, stripped);
+      if (bytes <= limit) {
+        return finish(tile, originalBytes, bytes, layers, result);
+      }
+    }
+
+    for (var layer : order) {
+      var kept = drop(result.get(layer), layerBytes.get(layer), bytes - limit);
+      result.put(layer, kept);
+      bytes += resize(layerBytes, layer, kept);
+      if (bytes <= limit) {
+        break;
+      }
+    }
+    return finish(tile, originalBytes, bytes, layers, result);
+  }
+
+  private Map<String, List<VectorTile.Feature>> finish(
+    TileCoord tile,
+    int originalBytes,
+    int bytes,
+    Map<String, List<VectorTile.Feature>> original,
+    Map<String, List<VectorTile.Feature>> result
+  ) {
+    int dropped = count(original) - count(result);
+    trimmed.increment();
+    synchronized (largest) {
+      largest.add(new Trim(tile, originalBytes, bytes, dropped));
+      if (largest.size() > REPORT_TILES) {
+        largest.poll();
+      }
+    }
+    LOGGER.debug(
+      "Trimmed {} from {} to {} bytes ({} features dropped)",
+      tile,
+      originalBytes,
+      bytes,
+      dropped
+    );
+    return result;
+  }
+
+  private static List<VectorTile.Feature> stripDetails(
+    List<VectorTile.Feature> features,
+    Set<String> keep
+  ) {
+    var result = new ArrayList<VectorTile.Feature>(features.size());
+    for (var feature : features) {
+      var tags = new HashMap<String, Object>();
+      for (var tag : feature.tags().entrySet()) {
+        if (keep.contains(tag.getKey())) {
+          tags.put(tag.getKey(), tag.getValue());
+        }
+      }
+      result.add(
+        new VectorTile.Feature(
+          feature.layer(),
+          feature.id(),
+          feature.geometry(),
+          tags,
+          feature.group()
+        )
+      );
+    }
+    return result;
+  }
+
+  /**
+   * Drops features from the end of a layer until roughly {@code excess} bytes
+   * have been removed, estimating each feature's share of the layer's encoded
+   * size from its geometry and attribute counts.
+   */
+  private static List<VectorTile.Feature> drop(
+    List<VectorTile.Feature> features,
+    int layerBytes,
+    int excess
+  ) {
+    long totalWeight = 0;
+    for (var feature : features) {
+      totalWeight += weight(feature);
+    }
+
+    int kept = features.size();
+    long removedWeight = 0;
+    while (kept > 0 && removedWeight * layerBytes < (long) excess * totalWeight) {
+      kept--;
+      removedWeight += weight(features.get(kept));
+    }
+    return features.subList(0, kept);
+  }
+
+  private static long weight(VectorTile.Feature feature) {
+    return feature.geometry().commands().length + 2L * feature.tags().size() + 2;
+  }
+
+  /**
+   * Records the encoded size of a layer's new {@code features} in
+   * {@code layerBytes}, and returns how much it changed by.
+   */
+  private static int resize(
+    Map<String, Integer> layerBytes,
+    String layer,
+    List<VectorTile.Feature> features
+  ) {
+    int size = encodedSize(layer, features);
+    return size - layerBytes.put(layer, size);
+  }
+
+  private static int encodedSize(String layer, List<VectorTile.Feature> features) {
+    return new VectorTile().addLayerFeatures(layer, features).encode().length;
+  }
+
+  /**
+   * Returns an upper bound on the encoded size of a tile, as if no attribute
+   * key or value were shared between features and every varint took the most
+   * bytes its value could need.
+   */
+  private static long maxEncodedSize(Map<String, List<VectorTile.Feature>> layers) {
+    long size = 0;
+    for (var entry : layers.entrySet()) {
+      // layer name, version, extent and field headers
+      size += 3L * entry.getKey().length() + 32;
+      for (var feature : entry.getValue()) {
+        // ID, type and field headers
+        size += 32;
+        for (int command : feature.geometry().commands()) {
+          size += varintSize(command);
+        }
+        for (var tag : feature.tags().entrySet()) {
+          // key and value indexes, plus the key and value in the layer's tables
+          size += 32 + 3L * tag.getKey().length();
+          size += tag.getValue() instanceof String value ? 3L * value.length() : 10;
+        }
+      }
+    }
+    return size;
+  }
+
+  private static int varintSize(int value) {
+    return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+  }
+
+  private static int count(Map<String, List<VectorTile.Feature>> layers) {
+    int count = 0;
+    for (var features : layers.values()) {
+      count += features.size();
+    }
+    return count;
+  }
+
+  /** Logs how many tiles were trimmed, and lists the largest of them. */
+  public void report() {
+    if (trimmed.sum() == 0) {
+      LOGGER.info("No tiles needed trimming to fit the tile budget");
+      return;
+    }
+
+    List<Trim> trims;
+    synchronized (largest) {
+      trims = largest
+        .stream()
+        .sorted(Comparator.comparingInt(Trim::originalBytes).reversed())
+        .toList();
+    }
+    LOGGER.info("Trimmed {} tiles to fit the tile budget, largest:", trimmed.sum());
+    for (var trim : trims) {
+      LOGGER.info(
+        "  {}: {} -> {} bytes, {} features dropped",
+        trim.tile(),
+        trim.originalBytes(),
+        trim.bytes(),
+        trim.droppedFeatures()
+      );
+    }
+  }
+}
@@ -0,0 +1,281 @@
+package fyi.osm.sourdough.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+/**
+ * The ocean polygons, in lat/lon, stored in a local file with an index of
+ * their bounding boxes, so that a build of a small area only reads the
+ * polygons that it needs (rather than the whole shapefile).
+ *
+ * <p>The file has a header, then one index entry per polygon (its envelope,
+ * and where its WKB is), sorted by west edge, then the WKB of every polygon.
+ * The index is memory-mapped. Since the polygons are split into small
+ * pieces, the polygons that can intersect an area are found by a binary
+ * search on the west edge (widened by the widest polygon) and a short scan.
+ *
+ * <p>The cache is written by a build that reads the shapefile, which hands
+ * every polygon to the profile whatever the build's bounds, so a cache
+ * written by any build holds all of them.
+ */
+public final class WaterPolygonCache implements Closeable {
+
+  private static final byte[] MAGIC = "SDWATER1".getBytes(StandardCharsets.US_ASCII);
+  private static final int HEADER_LENGTH = MAGIC.length + 4 + 8;
+  // min x, min y, max x, max y, then data offset and length
+  private static final int ENTRY_LENGTH = 4 * 8 + 8 + 4;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer index;
+  private final int count;
+  private final double maxWidth;
+  private final long dataOffset;
+
+  private WaterPolygonCache(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    var header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    channel.read(header, 0);
+    header.flip();
+    var magic = new byte[MAGIC.length];
+    header.get(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      channel.close();
+      throw new IOException(path + " is not a water polygon cache");
+    }
+    this.count = header.getInt();
+    this.maxWidth = header.getDouble();
+    this.index = channel.map(
+      FileChannel.MapMode.READ_ONLY,
+      HEADER_LENGTH,
+      (long) count * ENTRY_LENGTH
+    );
+    index.order(ByteOrder.LITTLE_ENDIAN);
+    this.dataOffset = HEADER_LENGTH + (long) count * ENTRY_LENGTH;
+  }
+
+  /**
+   * Opens the cache at {@code path}, or returns null if it doesn't exist or is
+   * older than {@code source} (the shapefile it was made from).
+   */
+  public static WaterPolygonCache open(Path path, Path source) throws IOException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+    if (
+      Files.exists(source) &&
+      Files.getLastModifiedTime(source).compareTo(Files.getLastModifiedTime(path)) > 0
+    ) {
+      return null;
+    }
+    return new WaterPolygonCache(path);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Returns the number of polygons whose envelope intersects {@code latLon},
+   * from the index alone.
+   */
+  public int count(Envelope latLon) {
+    int result = 0;
+    for (int i = first(latLon); i < count && minX(i) <= latLon.getMaxX(); i++) {
+      if (intersects(i, latLon)) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /** Calls {@code consumer} with each polygon whose envelope intersects {@code latLon}. */
+  public void query(Envelope latLon, Consumer<Geometry> consumer) throws IOException {
+    var reader = new WKBReader();
+    for (int i = first(latLon); i < count && minX(i) <= latLon.getMaxX(); i++) {
+      if (!intersects(i, latLon)) {
+        continue;
+      }
+      int pos = i * ENTRY_LENGTH;
+      var wkb = ByteBuffer.allocate(index.getInt(pos + 40));
+      long offset = dataOffset + index.getLong(pos + 32);
+      while (wkb.hasRemaining()) {
+        if (channel.read(wkb, offset + wkb.position()) < 0) {
+          throw new IOException("Water polygon cache is truncated");
+        }
+      }
+      try {
+        consumer.accept(reader.read(wkb.array()));
+      } catch (ParseException e) {
+        throw new IOException("Invalid polygon in water polygon cache", e);
+      }
+    }
+  }
+
+  /** Returns the first entry whose west edge could reach {@code latLon}. */
+  private int first(Envelope latLon) {
+    int lo = 0;
+    int hi = count;
+    double fromX = latLon.getMinX() - maxWidth;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (minX(mid) < fromX) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private boolean intersects(int i, Envelope latLon) {
+    int pos = i * ENTRY_LENGTH;
+    return (
+      index.getDouble(pos) <= latLon.getMaxX() &&
+      index.getDouble(pos + 16) >= latLon.getMinX() &&
+      index.getDouble(pos + 8) <= latLon.getMaxY() &&
+      index.getDouble(pos + 24) >= latLon.getMinY()
+    );
+  }
+
+  private double minX(int i) {
+    return index.getDouble(i * ENTRY_LENGTH);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Collects polygons (from any number of threads) as a build reads them from
+   * the shapefile, and writes the cache when the build is done.
+   */
+  public static final class Writer implements Closeable {
+
+    private final Path path;
+    private final Path dataPath;
+    private final FileChannel data;
+    private long dataLength = 0;
+
+    private double[] envelopes = new double[4 * 1024];
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int count = 0;
+
+    public Writer(Path path) throws IOException {
+      this.path = path;
+      this.dataPath = path.resolveSibling(path.getFileName() + ".data.tmp");
+      this.data = FileChannel.open(
+        dataPath,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING
+      );
+    }
+
+    public void add(Geometry latLon) throws IOException {
+      var wkb = new WKBWriter().write(latLon);
+      var envelope = latLon.getEnvelopeInternal();
+      synchronized (this) {
+        if (count == offsets.length) {
+          envelopes = Arrays.copyOf(envelopes, count * 8);
+          offsets = Arrays.copyOf(offsets, count * 2);
+          lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        envelopes[4 * count] = envelope.getMinX();
+        envelopes[4 * count + 1] = envelope.getMinY();
+        envelopes[4 * count + 2] = envelope.getMaxX();
+        envelopes[4 * count + 3] = envelope.getMaxY();
+        offsets[count] = dataLength;
+        lengths[count] = wkb.length;
+        count++;
+
+        var buf = ByteBuffer.wrap(wkb);
+        while (buf.hasRemaining()) {
+          data.write(buf);
+        }
+        dataLength += wkb.length;
+      }
+    }
+
+    /**
+     * Writes the cache file, replacing any existing one, unless no polygons
+     * were added (so a failed read can't leave later builds without oceans).
+     * Returns whether the file was written.
+     */
+    public synchronized boolean finish() throws IOException {
+      if (count == 0) {
+        return false;
+      }
+      var order = IntStream.range(0, count)
+        .boxed()
+        .sorted(Comparator.comparingDouble(i -> envelopes[4 * i]))
+        .mapToInt(Integer::intValue)
+        .toArray();
+      double maxWidth = 0;
+      for (int i = 0; i < count; i++) {
+        maxWidth = Math.max(maxWidth, envelopes[4 * i + 2] - envelopes[4 * i]);
+      }
+
+      var head = ByteBuffer.allocate(HEADER_LENGTH + count * ENTRY_LENGTH).order(
+        ByteOrder.LITTLE_ENDIAN
+      );
+      head.put(MAGIC).putInt(count).putDouble(maxWidth);
+      for (int i : order) {
+        head
+          .putDouble(envelopes[4 * i])
+          .putDouble(envelopes[4 * i + 1])
+          .putDouble(envelopes[4 * i + 2])
+          .putDouble(envelopes[4 * i + 3])
+          .putLong(offsets[i])
+          .putInt(lengths[i]);
+      }
+      head.flip();
+
+      var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+      try (
+        var out = FileChannel.open(
+          tmp,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING
+        )
+      ) {
+        while (head.hasRemaining()) {
+          out.write(head);
+        }
+        long position = 0;
+        while (position < dataLength) {
+          position += data.transferTo(position, dataLength - position, out);
+        }
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      data.close();
+      Files.deleteIfExists(dataPath);
+    }
+  }
+}